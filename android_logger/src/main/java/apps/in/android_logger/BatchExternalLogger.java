@@ -0,0 +1,17 @@
+package apps.in.android_logger;
+
+import java.util.List;
+
+/**
+ * External logger receiving messages in batches on a background thread.
+ */
+public interface BatchExternalLogger {
+
+    /**
+     * Called on the external logger thread with messages in the order they were logged.
+     * Slow implementation delays only next batches, messages not fitting the queue are dropped.
+     *
+     * @param entries logged messages
+     */
+    void log(List<LogEntry> entries);
+}
@@ -0,0 +1,131 @@
+package apps.in.android_logger;
+
+import java.util.HashMap;
+import java.util.TimeZone;
+
+/**
+ * Encodes log records to compact binary format.
+ * <p>
+ * File starts with magic "INLB", version byte and time zone id string.
+ * Then goes the sequence of records, each one starts with record type byte:
+ * <ul>
+ * <li>{@link #RECORD_TAG}: varint tag id, string</li>
+ * <li>{@link #RECORD_CONTEXT}: varint context id, string</li>
+ * <li>{@link #RECORD_ENTRY}: zigzag varint time delta from previous entry in milliseconds,
+ * level ordinal byte, varint tag id, varint context id (0 for no context), string message</li>
+ * </ul>
+ * Strings are written as varint length of UTF-8 bytes followed by the bytes.
+ * Tag and context ids are defined before the first use and may be redefined when dictionary is reset.
+ * The format must be kept in sync with BinaryLogDecoder of the log_decoder module.
+ */
+final class BinaryLogEncoder implements LogEncoder {
+
+    static final byte[] MAGIC = {'I', 'N', 'L', 'B'};
+    static final int VERSION = 1;
+    static final int RECORD_TAG = 1;
+    static final int RECORD_CONTEXT = 2;
+    static final int RECORD_ENTRY = 3;
+
+    private static final int MAX_DICTIONARY_SIZE = 4096;
+
+    private final HashMap<String, Integer> tags = new HashMap<>();
+    private final HashMap<Object, Integer> contexts = new HashMap<>();
+    private long previousTime;
+    private long committedTime;
+
+    @Override
+    public void startFile(LogOutputBuffer out) {
+        tags.clear();
+        contexts.clear();
+        previousTime = 0;
+        committedTime = 0;
+        for (byte b : MAGIC) {
+            out.put(b);
+        }
+        out.put((byte) VERSION);
+        putString(TimeZone.getDefault().getID(), out);
+    }
+
+    @Override
+    public void encode(long time, LogLevel level, String tag, Object context, String message, LogOutputBuffer out) {
+        int tagId = getTagId(tag, out);
+        int contextId = context != null ? getContextId(context, out) : 0;
+        out.put((byte) RECORD_ENTRY);
+        long delta = time - previousTime;
+        putVarLong((delta << 1) ^ (delta >> 63), out);
+        previousTime = time;
+        out.put((byte) level.ordinal());
+        putVarLong(tagId, out);
+        putVarLong(contextId, out);
+        putString(message, out);
+    }
+
+    @Override
+    public void commit() {
+        committedTime = previousTime;
+    }
+
+    /**
+     * Dictionary is reset, ids of lost records are redefined before the next use.
+     * Time delta is counted from the last written entry.
+     */
+    @Override
+    public void rollback() {
+        tags.clear();
+        contexts.clear();
+        previousTime = committedTime;
+    }
+
+    /**
+     * Returns id of the tag, defines new id if tag is met first time
+     */
+    private int getTagId(String tag, LogOutputBuffer out) {
+        Integer id = tags.get(tag);
+        if (id == null) {
+            if (tags.size() >= MAX_DICTIONARY_SIZE) {
+                tags.clear();
+            }
+            id = tags.size() + 1;
+            tags.put(tag, id);
+            out.put((byte) RECORD_TAG);
+            putVarLong(id, out);
+            putString(tag, out);
+        }
+        return id;
+    }
+
+    /**
+     * Returns id of the context, defines new id if context is met first time.
+     * Context object classes are interned by class, so their names are resolved once.
+     */
+    private int getContextId(Object context, LogOutputBuffer out) {
+        Integer id = contexts.get(context);
+        if (id == null) {
+            if (contexts.size() >= MAX_DICTIONARY_SIZE) {
+                contexts.clear();
+            }
+            id = contexts.size() + 1;
+            contexts.put(context, id);
+            out.put((byte) RECORD_CONTEXT);
+            putVarLong(id, out);
+            putString(LogMessages.resolveContext(context), out);
+        }
+        return id;
+    }
+
+    private static void putString(String value, LogOutputBuffer out) {
+        if (value == null) {
+            value = "null";
+        }
+        putVarLong(LogLineEncoder.getUtf8Length(value), out);
+        LogLineEncoder.putString(value, out);
+    }
+
+    private static void putVarLong(long value, LogOutputBuffer out) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+}
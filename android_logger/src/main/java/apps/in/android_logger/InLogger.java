@@ -1,34 +1,38 @@
 package apps.in.android_logger;
 
 import android.app.Activity;
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
 import androidx.core.content.FileProvider;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -40,12 +44,19 @@ public class InLogger {
     private static final int LOG_TO_FILE_MAX_DAYS_DEFAULT_VALUE = 1;
     private static final int LOG_TO_FILE_MIN_COUNT_DEFAULT_VALUE = 2;
     private static final String LOG_FILE_NAME_SUFFIX = ".log";
+    private static final String BINARY_LOG_FILE_NAME_SUFFIX = ".blog";
+    private static final String COMPRESSED_FILE_NAME_SUFFIX = ".gz";
     private static final String LOG_FILE_NAME_ZIP = "log.zip";
+    private static final String LOG_ARCHIVE_CACHE_PATH = "log_archive";
+    private static final String CRASH_TAIL_FILE_NAME = "crash.tail";
     private static final String PREFERENCES_FILE = "logger.pref";
     private static final String CRASH_PREF_KEY = "WAS_CRASH";
+    private static final String EMERGENCY_DRAIN_PREF_KEY = "EMERGENCY_DRAIN_NANOS";
+    private static final long EMERGENCY_DRAIN_TIMEOUT_MILLIS = 200;
+    private static final long EMERGENCY_SINK_DRAIN_TIMEOUT_MILLIS = 100;
+    private static final long NOT_MEASURED = Long.MIN_VALUE;
     private static InLogger logger;
     private static final SimpleDateFormat fileNameDateTimeFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss", Locale.US);
-    private static final SimpleDateFormat logDateTimeFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSS", Locale.US);
 
     /**
      * Initializer for Logger.
@@ -94,7 +105,284 @@ public class InLogger {
          * @return current Initializer
          */
         public Initializer writeToFile(int maxDays, int minCount) {
-            instance.setWriteToFile(context, Math.max(maxDays, LOG_TO_FILE_MAX_DAYS_DEFAULT_VALUE), Math.max(minCount, LOG_TO_FILE_MIN_COUNT_DEFAULT_VALUE));
+            instance.writeToFile = true;
+            instance.maxDays = Math.max(maxDays, LOG_TO_FILE_MAX_DAYS_DEFAULT_VALUE);
+            instance.minCount = Math.max(minCount, LOG_TO_FILE_MIN_COUNT_DEFAULT_VALUE);
+            return this;
+        }
+
+        /**
+         * Setup batching of log file writes.
+         * Writer thread sleeps while there are no messages and writes them when
+         * batch is full or the first buffered message waits longer than linger time.
+         *
+         * @param batchSize    number of buffered messages which triggers immediate write
+         * @param lingerMillis maximum time in milliseconds the first buffered message waits for write
+         * @return current Initializer
+         */
+        public Initializer setFileWriteBatching(int batchSize, long lingerMillis) {
+            instance.fileWriterConfig.batchSize = batchSize;
+            instance.fileWriterConfig.lingerMillis = lingerMillis;
+            return this;
+        }
+
+        /**
+         * Setup what to do with messages when log file buffer is full.
+         *
+         * @param overflowPolicy overflow policy, {@link OverflowPolicy#DROP_NEWEST} by default
+         * @return current Initializer
+         */
+        public Initializer setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            return setOverflowPolicy(overflowPolicy, LogFileWriter.DEFAULT_BLOCK_TIMEOUT_MILLIS);
+        }
+
+        /**
+         * Setup what to do with messages when log file buffer is full.
+         *
+         * @param overflowPolicy     overflow policy, {@link OverflowPolicy#DROP_NEWEST} by default
+         * @param blockTimeoutMillis maximum time in milliseconds to wait for free space with {@link OverflowPolicy#BLOCK} policy
+         * @return current Initializer
+         */
+        public Initializer setOverflowPolicy(OverflowPolicy overflowPolicy, long blockTimeoutMillis) {
+            instance.fileWriterConfig.overflowPolicy = overflowPolicy;
+            instance.fileWriterConfig.blockTimeoutMillis = blockTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Setup format of log files.
+         * Binary files are smaller and can be converted to text with the log_decoder tool.
+         *
+         * @param format log file format, {@link LogFileFormat#TEXT} by default
+         * @return current Initializer
+         */
+        public Initializer setFileFormat(LogFileFormat format) {
+            instance.fileWriterConfig.format = format;
+            return this;
+        }
+
+        /**
+         * Enables compression of log files while they are written.
+         * Files are written as gzip streams flushed after every write batch,
+         * so retention and rotation limits count compressed bytes.
+         *
+         * @param compress true to write compressed .gz log files
+         * @return current Initializer
+         */
+        public Initializer setFileCompression(boolean compress) {
+            instance.fileWriterConfig.compress = compress;
+            return this;
+        }
+
+        /**
+         * Enables sidecar index of log files used by {@link InLogger#searchLogs(LogSearch)}.
+         * Index keeps time range and bloom filters of tags and words for every 64 KB of log file,
+         * so search reads only parts which may contain matching messages.
+         * Only uncompressed text log files are indexed.
+         *
+         * @param index true to write .idx file next to every log file
+         * @return current Initializer
+         */
+        public Initializer setFileIndex(boolean index) {
+            instance.fileWriterConfig.index = index;
+            return this;
+        }
+
+        /**
+         * Enables rotation of log files. Writer switches to a new file when current file
+         * reaches given size or age, limits are checked after every write batch.
+         *
+         * @param maxFileSize      maximum size of single log file in bytes, 0 for no limit
+         * @param maxFileAgeMillis maximum age of single log file in milliseconds, 0 for no limit
+         * @return current Initializer
+         */
+        public Initializer setFileRotation(long maxFileSize, long maxFileAgeMillis) {
+            instance.fileWriterConfig.maxFileSize = maxFileSize;
+            instance.fileWriterConfig.maxFileAgeMillis = maxFileAgeMillis;
+            return this;
+        }
+
+        /**
+         * Setup total size limit of log files. Oldest log files are deleted in background
+         * at start and after every rotation until logs directory fits the limit.
+         * Current log file is never deleted.
+         *
+         * @param maxLogsSize maximum total size of log files in bytes, 0 for no limit
+         * @return current Initializer
+         */
+        public Initializer setMaxLogsSize(long maxLogsSize) {
+            instance.maxLogsSize = maxLogsSize;
+            return this;
+        }
+
+        /**
+         * Enables crash tail, a memory-mapped circular file receiving a copy of every message.
+         * It survives process death without flushing, so messages not written to log file
+         * before a crash or kill are recovered to the next log file at start.
+         * Messages are formatted on the calling thread while crash tail is enabled, so templates
+         * and message suppliers are built by every logging call which passes level filter
+         * instead of the writer thread. Use main-thread offload to keep this cost off the main thread.
+         *
+         * @param crashTailSize size of crash tail in bytes, 0 to disable
+         * @return current Initializer
+         */
+        public Initializer setCrashTailSize(int crashTailSize) {
+            instance.crashTailSize = crashTailSize;
+            return this;
+        }
+
+        /**
+         * Enables per-thread buffers. Every logging thread appends messages to its own buffer
+         * without synchronization, writer merges buffers by message time, so log file stays ordered.
+         * Messages are written after the linger time of {@link #setFileWriteBatching(int, long)} elapses.
+         *
+         * @param enabled true to use per-thread buffers
+         * @return current Initializer
+         */
+        public Initializer setPerThreadBuffers(boolean enabled) {
+            instance.fileWriterConfig.threadBuffers = enabled;
+            return this;
+        }
+
+        /**
+         * Setup limits of logged bundle content. Bundles are rendered on the writer thread,
+         * nested bundles deeper than the limit are logged with items count only.
+         *
+         * @param maxDepth  maximum depth of rendered nested bundles, 1 to render only top level items
+         * @param maxLength maximum length of rendered bundle content in characters
+         * @return current Initializer
+         */
+        public Initializer setBundleLogLimits(int maxDepth, int maxLength) {
+            instance.bundleMaxDepth = maxDepth;
+            instance.bundleMaxLength = maxLength;
+            return this;
+        }
+
+        /**
+         * Enables main-thread offload mode. Logging calls made on the main thread only capture
+         * message arguments, messages are built for console, sinks and crash tail on a background thread.
+         * Offloaded messages may reach log file after messages logged later on other threads,
+         * messages not fitting the offload queue are dropped.
+         *
+         * @param enabled true to build messages of main thread calls on a background thread
+         * @return current Initializer
+         */
+        public Initializer setMainThreadOffload(boolean enabled) {
+            instance.mainThreadOffload = enabled;
+            return this;
+        }
+
+        /**
+         * Enables deduplication of logged exceptions with default limits.
+         *
+         * @return current Initializer
+         * @see #setExceptionDeduplication(int, long)
+         */
+        public Initializer setExceptionDeduplication() {
+            return setExceptionDeduplication(LogTraceCache.DEFAULT_MAX_TRACES, LogTraceCache.DEFAULT_REPORT_INTERVAL_MILLIS);
+        }
+
+        /**
+         * Enables deduplication of logged exceptions. The first occurrence of a stack trace is written
+         * in full with trace id, later exceptions with the same classes and stack frames are written
+         * as a single line with reference to the id and occurrence count.
+         * Repeat counts are logged periodically and traces are written in full again in every new log file.
+         * Uncaught exceptions are always written in full.
+         *
+         * @param maxTraces            maximum number of remembered traces, least recently seen are forgotten first
+         * @param reportIntervalMillis interval in milliseconds of logging repeat counts
+         * @return current Initializer
+         */
+        public Initializer setExceptionDeduplication(int maxTraces, long reportIntervalMillis) {
+            instance.traceCache = maxTraces > 0 ? new LogTraceCache(maxTraces) : null;
+            instance.traceReportIntervalMillis = reportIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Enables periodic logging of logger statistics returned by {@link InLogger#getStats()}.
+         *
+         * @param intervalMillis interval in milliseconds between statistics lines, 0 to disable
+         * @return current Initializer
+         */
+        public Initializer setStatsReportInterval(long intervalMillis) {
+            instance.statsReportIntervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Limits rate of logged messages of every tag without own limit. Every tag gets its own budget,
+         * so a flooding tag does not evict messages of other tags. Suppressed messages are not built at all
+         * and their counts are logged every minute.
+         * Message length is charged when the message is built, a tag which went over the length budget
+         * is suppressed until the budget is refilled.
+         *
+         * @param messagesPerSecond   maximum average number of messages per second with bursts up to one second of messages, 0 for no limit
+         * @param charactersPerMinute maximum average length of messages per minute in characters, 0 for no limit
+         * @return current Initializer
+         */
+        public Initializer setRateLimit(double messagesPerSecond, long charactersPerMinute) {
+            instance.rateLimiter.setLimit(null, messagesPerSecond, charactersPerMinute);
+            return this;
+        }
+
+        /**
+         * Limits rate of logged messages of given tag, see {@link #setRateLimit(double, long)}.
+         *
+         * @param tag                 message tag
+         * @param messagesPerSecond   maximum average number of messages per second, 0 for no limit
+         * @param charactersPerMinute maximum average length of messages per minute in characters, 0 for no limit
+         * @return current Initializer
+         */
+        public Initializer setRateLimit(String tag, double messagesPerSecond, long charactersPerMinute) {
+            instance.rateLimiter.setLimit(tag, messagesPerSecond, charactersPerMinute);
+            return this;
+        }
+
+        /**
+         * Setup random sampling of messages of every tag without own sampling rate.
+         * Sampling is applied before rate limits, sampled out messages are not built.
+         *
+         * @param sampleRate part of messages to log from 0 to 1, 1 by default
+         * @return current Initializer
+         */
+        public Initializer setSampling(double sampleRate) {
+            instance.rateLimiter.setSampleRate(null, sampleRate);
+            return this;
+        }
+
+        /**
+         * Setup random sampling of messages of given tag, see {@link #setSampling(double)}.
+         *
+         * @param tag        message tag
+         * @param sampleRate part of messages to log from 0 to 1
+         * @return current Initializer
+         */
+        public Initializer setSampling(String tag, double sampleRate) {
+            instance.rateLimiter.setSampleRate(tag, sampleRate);
+            return this;
+        }
+
+        /**
+         * Setup minimum level of logged messages.
+         *
+         * @param level minimum level for tags without own level, {@link LogLevel#VERBOSE} by default
+         * @return current Initializer
+         */
+        public Initializer setMinLevel(LogLevel level) {
+            instance.levelFilter = instance.levelFilter.withGlobalLevel(level);
+            return this;
+        }
+
+        /**
+         * Setup minimum level of logged messages for given tag.
+         *
+         * @param tag   message tag
+         * @param level minimum level of the tag
+         * @return current Initializer
+         */
+        public Initializer setMinLevel(String tag, LogLevel level) {
+            instance.levelFilter = instance.levelFilter.withTagLevel(tag, level);
             return this;
         }
 
@@ -121,37 +409,123 @@ public class InLogger {
         }
 
         /**
-         * Enables writing logs to external storage
+         * Enables writing logs to external storage.
+         * External logger is called on a background thread, so it never delays logging.
          *
          * @param externalLogger External logging action
          * @return current Initializer
          */
         public Initializer setExternalLogger(ExternalLogger externalLogger) {
+            instance.externalLogger = externalLogger != null ? entries -> {
+                for (LogEntry entry : entries) {
+                    externalLogger.log(entry.getTag(), entry.getMessage());
+                }
+            } : null;
+            return this;
+        }
+
+        /**
+         * Enables writing logs to external storage in batches.
+         * External logger is called on a background thread with up to 64 messages at once.
+         *
+         * @param externalLogger External logging action
+         * @return current Initializer
+         */
+        public Initializer setExternalLogger(BatchExternalLogger externalLogger) {
             instance.externalLogger = externalLogger;
             return this;
         }
 
         /**
-         * Finishes Logger initializing.
+         * Adds custom destination of log messages with default queue capacity and batch size.
+         *
+         * @param sink log sink
+         * @return current Initializer
+         */
+        public Initializer addSink(LogSink sink) {
+            return addSink(sink, LogDispatcher.DEFAULT_QUEUE_CAPACITY, LogDispatcher.DEFAULT_BATCH_SIZE);
+        }
+
+        /**
+         * Adds custom destination of log messages. Sink is called on its own thread,
+         * messages not fitting its queue are dropped and their count is reported to the sink.
+         *
+         * @param sink          log sink
+         * @param queueCapacity maximum number of messages waiting for the sink
+         * @param batchSize     maximum number of messages passed to the sink at once
+         * @return current Initializer
+         */
+        public Initializer addSink(LogSink sink, int queueCapacity, int batchSize) {
+            instance.sinks.add(new SinkRegistration(sink, queueCapacity, batchSize));
+            return this;
+        }
+
+        /**
+         * Finishes Logger initializing. Log directory maintenance and creation of log file
+         * are done in background, messages logged before the log file is ready are kept in memory
+         * and written in order.
          */
         public void initialize() {
+            if (instance.writeToFile) {
+                instance.setWriteToFile(context, instance.maxDays, instance.minCount);
+            }
             instance.startLogging();
         }
 
     }
 
+    /**
+     * Log sink with its queue settings.
+     */
+    private static final class SinkRegistration {
+        final LogSink sink;
+        final int queueCapacity;
+        final int batchSize;
+
+        SinkRegistration(LogSink sink, int queueCapacity, int batchSize) {
+            this.sink = sink;
+            this.queueCapacity = queueCapacity;
+            this.batchSize = batchSize;
+        }
+    }
+
     private final Semaphore fileSemaphore = new Semaphore(1, true);
 
     private final SharedPreferences sharedPreferences;
+    private final LogFileWriter.Config fileWriterConfig = new LogFileWriter.Config();
     private LogFileWriter logFileWriter;
-    private ExternalLogger externalLogger;
+    private BatchExternalLogger externalLogger;
+    private final List<SinkRegistration> sinks = new ArrayList<>();
+    private volatile LogDispatcher[] sinkDispatchers = new LogDispatcher[0];
     private File logsDirectory;
     private String appTag;
     private String appId;
     private String appVersion;
     private boolean writeToConsole;
     private boolean writeToFile;
+    private int maxDays;
+    private int minCount;
+    private long maxLogsSize;
+    private int crashTailSize;
+    private int bundleMaxDepth = LogBundleMessage.DEFAULT_MAX_DEPTH;
+    private int bundleMaxLength = LogBundleMessage.DEFAULT_MAX_LENGTH;
+    private ScheduledExecutorService maintenanceExecutor;
+    private LogTraceCache traceCache;
+    private long traceReportIntervalMillis;
+    private boolean mainThreadOffload;
+    private ThreadPoolExecutor offloadExecutor;
+    private final Thread mainThread = Looper.getMainLooper().getThread();
+    private final AtomicLong mainThreadCalls = new AtomicLong();
+    private final AtomicLong mainThreadNanos = new AtomicLong();
+    private final AtomicLong mainThreadMaxNanos = new AtomicLong();
+    private final AtomicLong offloadedMessages = new AtomicLong();
+    private final AtomicLong offloadDropped = new AtomicLong();
+    private volatile long lastEmergencyDrainNanos = -1;
+    private long statsReportIntervalMillis;
+    private LogRateLimiter rateLimiter = new LogRateLimiter();
+    private LogArchive logArchive;
     private String zipLogPath;
+    private volatile LogLevelFilter levelFilter = new LogLevelFilter(LogLevel.VERBOSE);
 
     /**
      * Private constructor for Logger object.
@@ -211,7 +585,7 @@ public class InLogger {
      * @param message the message
      */
     public static void log(Object context, String message) {
-        getLogger().logMessage(getComponentName(context), message);
+        getLogger().logMessage(LogLevel.INFO, null, getComponentContext(context), message, null);
     }
 
     /**
@@ -222,7 +596,7 @@ public class InLogger {
      * @param message the message
      */
     public static void logWithTag(String tag, Object context, String message) {
-        getLogger().logMessage(tag, getComponentName(context), message);
+        getLogger().logMessage(LogLevel.INFO, tag, getComponentContext(context), message, null);
     }
 
     /**
@@ -246,6 +620,94 @@ public class InLogger {
         getLogger().logMessage(tag, context, message);
     }
 
+    /**
+     * Log message with object context, the message is formatted only when it is going to be written.
+     *
+     * @param context  object context
+     * @param template message template in {@link String#format(String, Object...)} syntax
+     * @param args     template arguments
+     */
+    public static void logFormat(Object context, String template, Object... args) {
+        getLogger().logMessage(LogLevel.INFO, null, getComponentContext(context), template, args);
+    }
+
+    /**
+     * Log message with object context, the message is formatted only when it is going to be written.
+     *
+     * @param tag      message tag
+     * @param context  object context
+     * @param template message template in {@link String#format(String, Object...)} syntax
+     * @param args     template arguments
+     */
+    public static void logFormatWithTag(String tag, Object context, String template, Object... args) {
+        getLogger().logMessage(LogLevel.INFO, tag, getComponentContext(context), template, args);
+    }
+
+    /**
+     * Log message with context, the message is formatted only when it is going to be written.
+     *
+     * @param context  context description
+     * @param template message template in {@link String#format(String, Object...)} syntax
+     * @param args     template arguments
+     */
+    public static void logFormat(String context, String template, Object... args) {
+        getLogger().logMessage(LogLevel.INFO, null, context, template, args);
+    }
+
+    /**
+     * Log message with context, the message is formatted only when it is going to be written.
+     *
+     * @param tag      message tag
+     * @param context  context description
+     * @param template message template in {@link String#format(String, Object...)} syntax
+     * @param args     template arguments
+     */
+    public static void logFormatWithTag(String tag, String context, String template, Object... args) {
+        getLogger().logMessage(LogLevel.INFO, tag, context, template, args);
+    }
+
+    /**
+     * Log message with object context, the message is built only when it is going to be written.
+     *
+     * @param context  object context
+     * @param supplier message supplier
+     */
+    public static void log(Object context, MessageSupplier supplier) {
+        getLogger().logMessage(LogLevel.INFO, null, getComponentContext(context), supplier, null);
+    }
+
+    /**
+     * Log message with object context, the message is built only when it is going to be written.
+     *
+     * @param tag      message tag
+     * @param context  object context
+     * @param supplier message supplier
+     */
+    public static void logWithTag(String tag, Object context, MessageSupplier supplier) {
+        getLogger().logMessage(LogLevel.INFO, tag, getComponentContext(context), supplier, null);
+    }
+
+    /**
+     * Log message with context, the message is built only when it is going to be written.
+     *
+     * @param context  context description
+     * @param supplier message supplier
+     */
+    public static void log(String context, MessageSupplier supplier) {
+        getLogger().logMessage(LogLevel.INFO, null, context, supplier, null);
+    }
+
+    /**
+     * Log message with context, the message is built only when it is going to be written.
+     *
+     * @param tag      message tag
+     * @param context  context description
+     * @param supplier message supplier
+     */
+    public static void logWithTag(String tag, String context, MessageSupplier supplier) {
+        getLogger().logMessage(LogLevel.INFO, tag, context, supplier, null);
+    }
+
     /**
      * Log content of bundle object.
      *
@@ -254,7 +716,7 @@ public class InLogger {
      * @param bundle      the bundle
      */
     public static void log(Object context, String description, Bundle bundle) {
-        log(getComponentName(context), description, bundle);
+        getLogger().logBundle(null, getComponentContext(context), null, description, bundle);
     }
 
     /**
@@ -266,7 +728,7 @@ public class InLogger {
      * @param bundle      the bundle
      */
     public static void logWithTag(String tag, Object context, String description, Bundle bundle) {
-        logWithTag(tag, getComponentName(context), description, bundle);
+        getLogger().logBundle(tag, getComponentContext(context), null, description, bundle);
     }
 
     /**
@@ -277,7 +739,7 @@ public class InLogger {
      * @param bundle      the bundle
      */
     public static void log(String context, String description, Bundle bundle) {
-        log(context, getBundleString(description, bundle));
+        getLogger().logBundle(null, context, null, description, bundle);
     }
 
     /**
@@ -289,7 +751,20 @@ public class InLogger {
      * @param bundle      the bundle
      */
     public static void logWithTag(String tag, String context, String description, Bundle bundle) {
-        logWithTag(tag, context, getBundleString(description, bundle));
+        getLogger().logBundle(tag, context, null, description, bundle);
+    }
+
+    /**
+     * Logs lifecycle event of component with its saved state as single message.
+     * Bundle items are captured on the calling thread and rendered when message is written.
+     *
+     * @param component   component receiving lifecycle event
+     * @param event       lifecycle event description
+     * @param description the description of bundle
+     * @param bundle      saved state bundle
+     */
+    static void logLifecycle(Object component, String event, String description, Bundle bundle) {
+        getLogger().logBundle(null, getComponentContext(component), event, description, bundle);
     }
 
     /**
@@ -323,7 +798,7 @@ public class InLogger {
      * @param intent      the intent
      */
     public static void log(String context, String description, Intent intent) {
-        log(context, getIntentString(description, intent));
+        getLogger().logIntent(null, context, description, intent);
     }
 
     /**
@@ -335,7 +810,7 @@ public class InLogger {
      * @param intent      the intent
      */
     public static void logWithTag(String tag, String context, String description, Intent intent) {
-        logWithTag(tag, context, getIntentString(description, intent));
+        getLogger().logIntent(tag, context, description, intent);
     }
 
     /**
@@ -369,7 +844,7 @@ public class InLogger {
      * @param t           the exception
      */
     public static void log(String context, String description, Throwable t) {
-        log(context, getExceptionString(description, t));
+        log(LogLevel.ERROR, context, description, t);
     }
 
     /**
@@ -381,74 +856,447 @@ public class InLogger {
      * @param t           the exception
      */
     public static void logWithTag(String tag, String context, String description, Throwable t) {
-        logWithTag(tag, context, getExceptionString(description, t));
+        logWithTag(LogLevel.ERROR, tag, context, description, t);
     }
 
     /**
-     * Share logs.
+     * Returns time spent by logging calls made on the main thread since logger initialization.
+     * Time is measured from the call to the moment message is queued, including snapshots of bundles and intents.
      *
-     * @param context app context
-     * @param title   the title of share method selection dialog
+     * @return snapshot of main thread logging statistics
      */
-    public static void shareLog(Activity context, String title) {
-        shareLog(context, title, true);
+    public static MainThreadLogStats getMainThreadLogStats() {
+        return getLogger().collectMainThreadStats();
     }
 
     /**
-     * Share logs.
+     * Returns statistics of log file writer, sinks and main thread logging calls.
+     * Counters are lock-free and cheap to read, values are accumulated since logger initialization.
      *
-     * @param context app context
-     * @param title   the title of share method selection dialog
-     * @param zip     should logs be packed to zip-archive
+     * @return snapshot of logger statistics
      */
-    public static void shareLog(Activity context, String title, boolean zip) {
-        Intent intent;
-        if (zip) {
-            intent = shareZippedLog(context);
-        } else {
-            intent = shareRawLogs(context);
-        }
-        if (intent != null) {
-            Intent chooserIntent = Intent.createChooser(intent, title);
-            if (chooserIntent != null) {
-                context.startActivityForResult(chooserIntent, 123);
-                return;
-            }
-        }
-        Toast.makeText(context, R.string.log_sharing_failed, Toast.LENGTH_LONG).show();
+    public static LogStats getStats() {
+        return getLogger().collectStats();
     }
 
     /**
-     * Zips log files to single zip-archive.
+     * Searches messages in uncompressed text log files, compressed and binary files are skipped.
+     * Indexed files are read only in parts which may contain matching messages, see {@link Initializer#setFileIndex(boolean)}.
+     * Search reads files synchronously, call it off the main thread.
      *
-     * @return path to zip-archive with log files
+     * @param search search conditions
+     * @return matching messages from oldest to newest
      */
-    public static String getLogZip() {
-        return getLogger().zipLog();
+    public static List<LogEntry> searchLogs(LogSearch search) {
+        return LogSearcher.search(getLogger().getLogFiles(), search);
     }
 
     /**
-     * Safe getter of logger instance
+     * Checks if message with given level and tag is going to be logged.
+     * Use it to skip building of expensive messages.
      *
-     * @return
+     * @param level message level
+     * @param tag   message tag, null for application tag
+     * @return true if message passes level filter
      */
-    private static InLogger getLogger() {
-        if (logger != null) {
-            return logger;
-        } else {
-            throw new LoggerNotInitializedException();
-        }
+    public static boolean isLoggable(LogLevel level, String tag) {
+        return getLogger().isEnabled(level, tag);
     }
 
     /**
-     * Zips log files to single archive and prepare intent for sharing
+     * Changes minimum level of logged messages.
      *
-     * @param context app context
-     * @return intent for logs sharing
+     * @param level minimum level for tags without own level
      */
-    private static Intent shareZippedLog(Context context) {
+    public static void setMinLevel(LogLevel level) {
+        InLogger logger = getLogger();
+        synchronized (logger) {
+            logger.levelFilter = logger.levelFilter.withGlobalLevel(level);
+        }
+    }
+
+    /**
+     * Changes minimum level of logged messages for given tag.
+     *
+     * @param tag   message tag
+     * @param level minimum level of the tag, null to use global level
+     */
+    public static void setMinLevel(String tag, LogLevel level) {
+        InLogger logger = getLogger();
+        synchronized (logger) {
+            logger.levelFilter = logger.levelFilter.withTagLevel(tag, level);
+        }
+    }
+
+    /**
+     * Log message with given level.
+     *
+     * @param level   message level
+     * @param context object context
+     * @param message the message
+     */
+    public static void log(LogLevel level, Object context, String message) {
+        logWithTag(level, null, context, message);
+    }
+
+    /**
+     * Log message with given level.
+     *
+     * @param level   message level
+     * @param tag     message tag
+     * @param context object context
+     * @param message the message
+     */
+    public static void logWithTag(LogLevel level, String tag, Object context, String message) {
+        InLogger logger = getLogger();
+        if (logger.isEnabled(level, tag)) {
+            logger.logMessage(level, tag, getComponentContext(context), message, null);
+        }
+    }
+
+    /**
+     * Log message with given level, the message is formatted only when it is going to be written.
+     *
+     * @param level    message level
+     * @param context  object context
+     * @param template message template in {@link String#format(String, Object...)} syntax
+     * @param args     template arguments
+     */
+    public static void logFormat(LogLevel level, Object context, String template, Object... args) {
+        logFormatWithTag(level, null, context, template, args);
+    }
+
+    /**
+     * Log message with given level, the message is formatted only when it is going to be written.
+     *
+     * @param level    message level
+     * @param tag      message tag
+     * @param context  object context
+     * @param template message template in {@link String#format(String, Object...)} syntax
+     * @param args     template arguments
+     */
+    public static void logFormatWithTag(LogLevel level, String tag, Object context, String template, Object... args) {
+        InLogger logger = getLogger();
+        if (logger.isEnabled(level, tag)) {
+            logger.logMessage(level, tag, getComponentContext(context), template, args);
+        }
+    }
+
+    /**
+     * Log message with given level, the message is built only when it is going to be written.
+     *
+     * @param level    message level
+     * @param context  object context
+     * @param supplier message supplier
+     */
+    public static void log(LogLevel level, Object context, MessageSupplier supplier) {
+        logWithTag(level, null, context, supplier);
+    }
+
+    /**
+     * Log message with given level, the message is built only when it is going to be written.
+     *
+     * @param level    message level
+     * @param tag      message tag
+     * @param context  object context
+     * @param supplier message supplier
+     */
+    public static void logWithTag(LogLevel level, String tag, Object context, MessageSupplier supplier) {
+        InLogger logger = getLogger();
+        if (logger.isEnabled(level, tag)) {
+            logger.logMessage(level, tag, getComponentContext(context), supplier, null);
+        }
+    }
+
+    /**
+     * Log exception with given level.
+     *
+     * @param level       message level
+     * @param context     object context
+     * @param description the description of exception
+     * @param t           the exception
+     */
+    public static void log(LogLevel level, Object context, String description, Throwable t) {
+        logWithTag(level, null, context, description, t);
+    }
+
+    /**
+     * Log exception with given level.
+     *
+     * @param level       message level
+     * @param tag         message tag
+     * @param context     object context
+     * @param description the description of exception
+     * @param t           the exception
+     */
+    public static void logWithTag(LogLevel level, String tag, Object context, String description, Throwable t) {
+        InLogger logger = getLogger();
+        if (logger.isEnabled(level, tag)) {
+            logger.logMessage(level, tag, getComponentContext(context), new LogThrowableMessage(description, t, logger.traceCache), null);
+        }
+    }
+
+    /**
+     * Log message with given level.
+     *
+     * @param level   message level
+     * @param context context description
+     * @param message the message
+     */
+    public static void log(LogLevel level, String context, String message) {
+        logWithTag(level, null, context, message);
+    }
+
+    /**
+     * Log message with given level.
+     *
+     * @param level   message level
+     * @param tag     message tag
+     * @param context context description
+     * @param message the message
+     */
+    public static void logWithTag(LogLevel level, String tag, String context, String message) {
+        InLogger logger = getLogger();
+        if (logger.isEnabled(level, tag)) {
+            logger.logMessage(level, tag, context, message, null);
+        }
+    }
+
+    /**
+     * Log message with given level, the message is formatted only when it is going to be written.
+     *
+     * @param level    message level
+     * @param context  context description
+     * @param template message template in {@link String#format(String, Object...)} syntax
+     * @param args     template arguments
+     */
+    public static void logFormat(LogLevel level, String context, String template, Object... args) {
+        logFormatWithTag(level, null, context, template, args);
+    }
+
+    /**
+     * Log message with given level, the message is formatted only when it is going to be written.
+     *
+     * @param level    message level
+     * @param tag      message tag
+     * @param context  context description
+     * @param template message template in {@link String#format(String, Object...)} syntax
+     * @param args     template arguments
+     */
+    public static void logFormatWithTag(LogLevel level, String tag, String context, String template, Object... args) {
+        InLogger logger = getLogger();
+        if (logger.isEnabled(level, tag)) {
+            logger.logMessage(level, tag, context, template, args);
+        }
+    }
+
+    /**
+     * Log message with given level, the message is built only when it is going to be written.
+     *
+     * @param level    message level
+     * @param context  context description
+     * @param supplier message supplier
+     */
+    public static void log(LogLevel level, String context, MessageSupplier supplier) {
+        logWithTag(level, null, context, supplier);
+    }
+
+    /**
+     * Log message with given level, the message is built only when it is going to be written.
+     *
+     * @param level    message level
+     * @param tag      message tag
+     * @param context  context description
+     * @param supplier message supplier
+     */
+    public static void logWithTag(LogLevel level, String tag, String context, MessageSupplier supplier) {
+        InLogger logger = getLogger();
+        if (logger.isEnabled(level, tag)) {
+            logger.logMessage(level, tag, context, supplier, null);
+        }
+    }
+
+    /**
+     * Log exception with given level.
+     *
+     * @param level       message level
+     * @param context     context description
+     * @param description the description of exception
+     * @param t           the exception
+     */
+    public static void log(LogLevel level, String context, String description, Throwable t) {
+        logWithTag(level, null, context, description, t);
+    }
+
+    /**
+     * Log exception with given level.
+     *
+     * @param level       message level
+     * @param tag         message tag
+     * @param context     context description
+     * @param description the description of exception
+     * @param t           the exception
+     */
+    public static void logWithTag(LogLevel level, String tag, String context, String description, Throwable t) {
+        InLogger logger = getLogger();
+        if (logger.isEnabled(level, tag)) {
+            logger.logMessage(level, tag, context, new LogThrowableMessage(description, t, logger.traceCache), null);
+        }
+    }
+
+    /**
+     * Share logs.
+     *
+     * @param context app context
+     * @param title   the title of share method selection dialog
+     */
+    public static void shareLog(Activity context, String title) {
+        shareLog(context, title, true);
+    }
+
+    /**
+     * Share logs. Logs are prepared in background, share method selection dialog is shown when they are ready.
+     *
+     * @param context app context
+     * @param title   the title of share method selection dialog
+     * @param zip     should logs be packed to zip-archive
+     */
+    public static void shareLog(Activity context, String title, boolean zip) {
+        shareLog(context, title, zip, null);
+    }
+
+    /**
+     * Share logs. Logs are prepared in background, share method selection dialog is shown when they are ready.
+     *
+     * @param context  app context
+     * @param title    the title of share method selection dialog
+     * @param zip      should logs be packed to zip-archive
+     * @param callback receiver of preparation progress, may be null
+     * @return handle for cancelling the preparation
+     */
+    public static LogShareTask shareLog(Activity context, String title, boolean zip, ShareLogCallback callback) {
+        return prepareShareIntent(context, zip, new ShareLogCallback() {
+            @Override
+            public void onProgress(int done, int total) {
+                if (callback != null) {
+                    callback.onProgress(done, total);
+                }
+            }
+
+            @Override
+            public void onIntentReady(Intent intent) {
+                if (context.isFinishing()) {
+                    return;
+                }
+                Intent chooserIntent = Intent.createChooser(intent, title);
+                if (chooserIntent != null) {
+                    context.startActivityForResult(chooserIntent, 123);
+                } else {
+                    Toast.makeText(context, R.string.log_sharing_failed, Toast.LENGTH_LONG).show();
+                }
+                if (callback != null) {
+                    callback.onIntentReady(intent);
+                }
+            }
+
+            @Override
+            public void onFailed() {
+                if (!context.isFinishing()) {
+                    Toast.makeText(context, R.string.log_sharing_failed, Toast.LENGTH_LONG).show();
+                }
+                if (callback != null) {
+                    callback.onFailed();
+                }
+            }
+        });
+    }
+
+    /**
+     * Prepares intent for logs sharing in background and delivers it on the main thread.
+     *
+     * @param context  app context
+     * @param zip      should logs be packed to zip-archive
+     * @param callback receiver of preparation progress and intent
+     * @return handle for cancelling the preparation
+     */
+    public static LogShareTask prepareShareIntent(Context context, boolean zip, ShareLogCallback callback) {
+        InLogger logger = getLogger();
+        Context appContext = context.getApplicationContext();
+        LogShareTask task = new LogShareTask(callback);
+        logger.getMaintenanceExecutor().execute(() -> {
+            if (task.isCancelled()) {
+                return;
+            }
+            Intent intent = null;
+            try {
+                intent = zip ? shareZippedLog(appContext, task) : shareRawLogs(appContext, task);
+            } catch (CancellationException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            task.postResult(intent);
+        });
+        return task;
+    }
+
+    /**
+     * Zips log files to single zip-archive.
+     *
+     * @return path to zip-archive with log files
+     */
+    public static String getLogZip() {
+        return getLogger().zipLog();
+    }
+
+    /**
+     * Zips log files to single zip-archive in background.
+     * Finished log files are taken from archive cache, only current log file is compressed.
+     *
+     * @param callback receiver of zip-archive path, called on the main thread
+     */
+    public static void getLogZip(LogZipCallback callback) {
+        InLogger logger = getLogger();
+        Handler handler = new Handler(Looper.getMainLooper());
+        logger.getMaintenanceExecutor().execute(() -> {
+            String path = logger.buildLogZip(null);
+            handler.post(() -> callback.onLogZip(path));
+        });
+    }
+
+    /**
+     * Safe getter of logger instance
+     *
+     * @return
+     */
+    private static InLogger getLogger() {
+        if (logger != null) {
+            return logger;
+        } else {
+            throw new LoggerNotInitializedException();
+        }
+    }
+
+    /**
+     * Zips log files to single archive and prepare intent for sharing, called on maintenance thread
+     *
+     * @param context app context
+     * @param task    sharing task receiving progress
+     * @return intent for logs sharing
+     */
+    private static Intent shareZippedLog(Context context, LogShareTask task) {
         Intent intent = new Intent(Intent.ACTION_SEND);
-        String filePath = getLogger().zipLog();
+        String filePath = getLogger().buildLogZip(new LogArchive.Progress() {
+            @Override
+            public boolean isCancelled() {
+                return task.isCancelled();
+            }
+
+            @Override
+            public void onProgress(int done, int total) {
+                task.postProgress(done, total);
+            }
+        });
         if (filePath != null) {
             Uri uri = getFileUri(context, filePath);
             if (uri != null) {
@@ -462,12 +1310,13 @@ public class InLogger {
     }
 
     /**
-     * Prepares intent for sharing raw log files
+     * Prepares intent for sharing raw log files, called on maintenance thread
      *
      * @param context app context
+     * @param task    sharing task receiving progress
      * @return intent for logs sharing
      */
-    private static Intent shareRawLogs(Context context) {
+    private static Intent shareRawLogs(Context context, LogShareTask task) {
         Intent intent = new Intent(Intent.ACTION_SEND_MULTIPLE);
         InLogger logger = getLogger();
         ArrayList<Uri> uris = new ArrayList<>();
@@ -477,17 +1326,22 @@ public class InLogger {
             File[] directoryFiles = directory.listFiles();
             if (directoryFiles != null) {
                 for (File directoryFile : directoryFiles) {
-                    if (directoryFile.getName().endsWith(LOG_FILE_NAME_SUFFIX)) {
+                    if (isLogFile(directoryFile.getName())) {
                         files.add(directoryFile.getAbsolutePath());
                     }
                 }
             }
         }
+        int done = 0;
         for (String filePath : files) {
+            if (task.isCancelled()) {
+                throw new CancellationException();
+            }
             Uri uri = getFileUri(context, filePath);
             if (uri != null) {
                 uris.add(uri);
             }
+            task.postProgress(++done, files.size());
         }
         if (uris.size() > 0) {
             intent.setType("text/plain");
@@ -515,6 +1369,44 @@ public class InLogger {
         return null;
     }
 
+    /**
+     * Checks if file with given name is log file
+     *
+     * @param name file name
+     * @return true for text and binary log files, compressed or not
+     */
+    private static boolean isLogFile(String name) {
+        if (name.endsWith(COMPRESSED_FILE_NAME_SUFFIX)) {
+            name = name.substring(0, name.length() - COMPRESSED_FILE_NAME_SUFFIX.length());
+        }
+        return name.endsWith(LOG_FILE_NAME_SUFFIX) || name.endsWith(BINARY_LOG_FILE_NAME_SUFFIX);
+    }
+
+    /**
+     * Checks if file with given name is index of existing log file
+     *
+     * @param name file name
+     * @return true if indexed log file exists
+     */
+    private boolean isIndexOfLogFile(String name) {
+        String logFileName = LogFileIndex.getLogFileName(name);
+        return logFileName != null && isLogFile(logFileName) && new File(logsDirectory, logFileName).exists();
+    }
+
+    /**
+     * Deletes log file together with its index
+     *
+     * @param file log file
+     * @return true if log file was deleted
+     */
+    private static boolean deleteLogFile(File file) {
+        File indexFile = LogFileIndex.getIndexFile(file);
+        if (indexFile.exists()) {
+            indexFile.delete();
+        }
+        return file.delete();
+    }
+
     /**
      * Returns the string representation of context object class
      *
@@ -529,223 +1421,439 @@ public class InLogger {
     }
 
     /**
-     * Returns the string representation of the given bundle object
+     * Returns deferred context of the context object, its class name is resolved when message is written
      *
-     * @param description bundle object description
-     * @param bundle      bundle object
-     * @return string representation of the bundle object
+     * @param component context object or context description
+     * @return context description, class of the context object or "null"
      */
-    private static String getBundleString(String description, Bundle bundle) {
-        StringBuilder stringBuilder = new StringBuilder();
-        try {
-            if (bundle != null) {
-                Set<String> keys = bundle.keySet();
-                stringBuilder.append(String.format(Locale.US, "\t%s (%d items)", description, keys.size()));
-                for (String key : keys) {
-                    stringBuilder.append(String.format("\n\t%s = %s", key, bundle.get(key)));
+    private static Object getComponentContext(Object component) {
+        if (component instanceof String) {
+            return component;
+        }
+        if (component != null) {
+            return component.getClass();
+        }
+        return "null";
+    }
+
+    /**
+     * Setup file logging. Log directory is prepared and the first log file is created on the writer thread,
+     * messages logged meanwhile are kept in the writer buffer and written when the file is ready.
+     *
+     * @param context  app context
+     * @param maxDays  maximum days before current date to keep log files
+     * @param minCount minimum number of log files to keep
+     */
+    private void setWriteToFile(Context context, int maxDays, int minCount) {
+        this.writeToFile = true;
+        logsDirectory = new File(context.getFilesDir(), LOG_PATH);
+        zipLogPath = new File(logsDirectory, LOG_FILE_NAME_ZIP).getAbsolutePath();
+        logArchive = new LogArchive(new File(context.getCacheDir(), LOG_ARCHIVE_CACHE_PATH));
+        LogFileWriter.FileRotation rotation = new LogFileWriter.FileRotation() {
+            private boolean prepared;
+
+            @Override
+            public File nextFile() throws IOException {
+                if (!prepared) {
+                    prepared = true;
+                    return prepareLogFiles(maxDays, minCount);
                 }
-            } else {
-                stringBuilder.append(String.format("\t%s: null", description));
+                return createLogFile();
             }
-        } catch (Exception e) {
-            return "";
+
+            @Override
+            public void onFileRotated(File previousFile) {
+                scheduleLogsSizeCheck();
+                getMaintenanceExecutor().execute(() -> logArchive.cache(previousFile));
+                if (traceCache != null) {
+                    String repeats = traceCache.reset();
+                    if (repeats != null) {
+                        getMaintenanceExecutor().execute(() -> logMessage(repeats));
+                    }
+                }
+            }
+        };
+        synchronized (this) {
+            logFileWriter = new LogFileWriter(null, fileWriterConfig, rotation);
         }
-        return stringBuilder.toString();
     }
 
     /**
-     * Returns the string representation of the given intent object
+     * Deletes outdated and unknown files of log directory, creates the first log file and sets up crash tail.
+     * Called on the writer thread before the first write.
      *
-     * @param description description of the intent object
-     * @param intent      intent object
-     * @return string representation of the intent object
+     * @param maxDays  maximum days before current date to keep log files
+     * @param minCount minimum number of log files to keep
+     * @return the first log file
+     * @throws IOException if log file cannot be created
      */
-    private static String getIntentString(String description, Intent intent) {
-        StringBuilder stringBuilder = new StringBuilder();
-        if (intent != null) {
-            stringBuilder.append(description);
-            stringBuilder.append(String.format("\nACTION: %s", intent.getAction()));
-            ComponentName component = intent.getComponent();
-            stringBuilder.append(String.format("\nCOMPONENT NAME: %s", component != null ? component.getShortClassName() : "null"));
-            stringBuilder.append(String.format("\n%s", getBundleString("EXTRAS", intent.getExtras())));
-        } else {
-            stringBuilder.append(String.format("\t%s: null", description));
+    private File prepareLogFiles(int maxDays, int minCount) throws IOException {
+        if (!logsDirectory.exists()) {
+            logsDirectory.mkdir();
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_MONTH, -maxDays);
+        Date min = calendar.getTime();
+        File[] files = logsDirectory.listFiles();
+        LinkedList<File> logFiles = new LinkedList<>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (isLogFile(name)) {
+                    logFiles.add(file);
+                } else if (!name.equals(CRASH_TAIL_FILE_NAME) && !isIndexOfLogFile(name)) {
+                    try {
+                        file.delete();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
         }
-        return stringBuilder.toString();
+        Collections.sort(logFiles, (o1, o2) -> o1.getName().compareTo(o2.getName()));
+        while (logFiles.size() > minCount) {
+            File file = logFiles.getFirst();
+            try {
+                Date fileDate = fileNameDateTimeFormat.parse(file.getName());
+                if (fileDate.before(min)) {
+                    try {
+                        deleteLogFile(file);
+                        logFiles.removeFirst();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                } else {
+                    break;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                logFiles.removeFirst();
+            }
+        }
+        File logFile = createLogFile();
+        LogFileWriter writer;
+        synchronized (this) {
+            // writer thread may start before the writer is assigned
+            writer = logFileWriter;
+        }
+        setupCrashTail(writer, new File(logsDirectory, CRASH_TAIL_FILE_NAME));
+        scheduleLogsSizeCheck();
+        getMaintenanceExecutor().execute(this::cacheFinishedLogFiles);
+        return logFile;
     }
 
     /**
-     * Returns the string representation of exception
+     * Recovers messages left in crash tail by previous run and maps crash tail for current run
      *
-     * @param description exception description
-     * @param e           exception
-     * @return string representation of exception
+     * @param writer        log file writer
+     * @param crashTailFile crash tail file
      */
-    private static String getExceptionString(String description, Throwable e) {
-        return String.format("%s:\n%s", description, getExceptionString(e));
+    private void setupCrashTail(LogFileWriter writer, File crashTailFile) {
+        List<LogCrashTail.Entry> recovered = LogCrashTail.recover(crashTailFile);
+        if (crashTailSize > 0) {
+            try {
+                writer.setCrashTail(LogCrashTail.open(crashTailFile, crashTailSize));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else if (crashTailFile.exists()) {
+            crashTailFile.delete();
+        }
+        writer.logRecovered(recovered);
     }
 
     /**
-     * Returns the string representation of exception
+     * Creates new empty log file named by current time. Files created within the same second
+     * get numeric suffix, so names keep chronological order.
      *
-     * @param e exception
-     * @return string representation of exception
+     * @return created log file
+     * @throws IOException if file cannot be created
      */
-    private static String getExceptionString(Throwable e) {
-        if (e != null) {
-            Throwable throwable = e;
-            StringBuilder stringBuilder = new StringBuilder();
-            do {
-                stringBuilder.append(String.format("%s: %s", getComponentName(throwable), throwable.getMessage()));
-                for (StackTraceElement element : throwable.getStackTrace()) {
-                    stringBuilder.append("\n\t");
-                    stringBuilder.append(element.toString());
-                }
-                throwable = throwable.getCause();
-                if (throwable != null) {
-                    stringBuilder.append("\nCaused by: ");
-                }
-            } while (throwable != null);
-            return stringBuilder.toString();
-        } else return "";
+    private File createLogFile() throws IOException {
+        String name;
+        synchronized (fileNameDateTimeFormat) {
+            name = fileNameDateTimeFormat.format(new Date());
+        }
+        String suffix = fileWriterConfig.format == LogFileFormat.BINARY ? BINARY_LOG_FILE_NAME_SUFFIX : LOG_FILE_NAME_SUFFIX;
+        if (fileWriterConfig.compress) {
+            suffix += COMPRESSED_FILE_NAME_SUFFIX;
+        }
+        File logFile = new File(logsDirectory, name + suffix);
+        for (int index = 1; logFile.exists(); index++) {
+            logFile = new File(logsDirectory, name + "_" + index + suffix);
+        }
+        if (!logFile.createNewFile()) {
+            throw new IOException("Cannot create log file " + logFile);
+        }
+        return logFile;
     }
 
     /**
-     * Setup file logging
+     * Returns single background thread executor for log files maintenance
      *
-     * @param context  app context
-     * @param maxDays  maximum days before current date to keep log files
-     * @param minCount minimum number of log files to keep
+     * @return maintenance executor
      */
-    private void setWriteToFile(Context context, int maxDays, int minCount) {
-        this.writeToFile = true;
-        try {
-            logsDirectory = new File(context.getFilesDir(), LOG_PATH);
-            if (!logsDirectory.exists()) {
-                logsDirectory.mkdir();
-            }
-            File zip = new File(logsDirectory, LOG_FILE_NAME_ZIP);
-            if (zip.exists()) {
-                zip.delete();
-            }
-            zipLogPath = zip.getAbsolutePath();
-            Calendar calendar = Calendar.getInstance();
-            String currentLogFileName = fileNameDateTimeFormat.format(calendar.getTime());
-            calendar.add(Calendar.DAY_OF_MONTH, -maxDays);
-            Date min = calendar.getTime();
-            File[] files = logsDirectory.listFiles();
-            LinkedList<File> logFiles = new LinkedList<>();
-            if (files != null) {
-                for (File file : files) {
-                    String name = file.getName();
-                    if (name.endsWith(LOG_FILE_NAME_SUFFIX)) {
-                        logFiles.add(file);
-                    } else {
-                        try {
-                            file.delete();
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
+    private synchronized ScheduledExecutorService getMaintenanceExecutor() {
+        if (maintenanceExecutor == null) {
+            maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "InLogger maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return maintenanceExecutor;
+    }
+
+    /**
+     * Schedules deletion of oldest log files over total size limit on maintenance thread
+     */
+    private void scheduleLogsSizeCheck() {
+        if (maxLogsSize > 0) {
+            getMaintenanceExecutor().execute(this::enforceLogsSizeLimit);
+        }
+    }
+
+    /**
+     * Returns log files sorted from oldest to newest
+     *
+     * @return log files of logs directory
+     */
+    private List<File> getLogFiles() {
+        List<File> logFiles = new ArrayList<>();
+        File[] files = logsDirectory != null ? logsDirectory.listFiles() : null;
+        if (files != null) {
+            for (File file : files) {
+                if (isLogFile(file.getName())) {
+                    logFiles.add(file);
                 }
             }
-            Collections.sort(logFiles, (o1, o2) -> o1.getName().compareTo(o2.getName()));
-            while (logFiles.size() > minCount) {
-                File file = logFiles.getFirst();
-                String name = file.getName();
-                String date = name.substring(0, name.length() - LOG_FILE_NAME_SUFFIX.length());
-                try {
-                    Date fileDate = fileNameDateTimeFormat.parse(date);
-                    if (fileDate.before(min)) {
-                        try {
-                            file.delete();
-                            logFiles.removeFirst();
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    } else {
-                        break;
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+        }
+        Collections.sort(logFiles, (o1, o2) -> o1.getName().compareTo(o2.getName()));
+        return logFiles;
+    }
+
+    /**
+     * Returns log files which are still written
+     *
+     * @return current log file and its overflow file
+     */
+    private List<File> getActiveLogFiles() {
+        if (logFileWriter == null) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(logFileWriter.getLogFile(), logFileWriter.getCurrentOverflowFile());
+    }
+
+    /**
+     * Compresses log files of previous runs to archive cache
+     */
+    private void cacheFinishedLogFiles() {
+        List<File> activeFiles = getActiveLogFiles();
+        for (File file : getLogFiles()) {
+            if (!activeFiles.contains(file)) {
+                logArchive.cache(file);
+            }
+        }
+    }
+
+    /**
+     * Deletes oldest log files until total size of log files fits the limit.
+     * Current log file and its overflow file are kept.
+     */
+    private void enforceLogsSizeLimit() {
+        for (File file : deleteOldestLogFiles(getLogFiles(), getActiveLogFiles(), maxLogsSize)) {
+            logArchive.remove(file);
+        }
+    }
+
+    /**
+     * Deletes oldest log files until total size of log files fits the limit
+     *
+     * @param logFiles    log files sorted from oldest to newest
+     * @param activeFiles log files which are still written, they are never deleted
+     * @param maxLogsSize maximum total size of log files in bytes
+     * @return deleted log files
+     */
+    static List<File> deleteOldestLogFiles(List<File> logFiles, List<File> activeFiles, long maxLogsSize) {
+        long totalSize = 0;
+        for (File file : logFiles) {
+            totalSize += file.length();
+        }
+        List<File> deletedFiles = new ArrayList<>();
+        for (File file : logFiles) {
+            if (totalSize <= maxLogsSize) {
+                break;
+            }
+            if (activeFiles.contains(file)) {
+                continue;
             }
-            File logFile = new File(logsDirectory, currentLogFileName + ".log");
-            if (logFile.exists()) {
-                logFile.delete();
+            long length = file.length();
+            try {
+                if (deleteLogFile(file)) {
+                    totalSize -= length;
+                    deletedFiles.add(file);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
             }
-            logFile.createNewFile();
-            logFileWriter = new LogFileWriter(logFile);
-        } catch (IOException e) {
-            this.writeToFile = false;
         }
+        return deletedFiles;
     }
 
     /**
      * Starts logging
      */
     private void startLogging() {
+        List<LogDispatcher> dispatchers = new ArrayList<>();
+        if (writeToConsole) {
+            dispatchers.add(new LogDispatcher("InLogger console", LogDispatcher.DEFAULT_QUEUE_CAPACITY, LogDispatcher.DEFAULT_BATCH_SIZE, new LogcatSink()::write));
+        }
+        if (externalLogger != null) {
+            dispatchers.add(new LogDispatcher("InLogger external", LogDispatcher.DEFAULT_QUEUE_CAPACITY, LogDispatcher.DEFAULT_BATCH_SIZE, externalLogger::log));
+        }
+        for (SinkRegistration registration : sinks) {
+            dispatchers.add(new LogDispatcher("InLogger sink " + registration.sink.getClass().getSimpleName(), registration.queueCapacity, registration.batchSize, registration.sink::write));
+        }
+        sinkDispatchers = dispatchers.toArray(new LogDispatcher[0]);
+        if (mainThreadOffload) {
+            offloadExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(LogDispatcher.DEFAULT_QUEUE_CAPACITY), runnable -> {
+                Thread thread = new Thread(runnable, "InLogger offload");
+                thread.setDaemon(true);
+                return thread;
+            }, (runnable, executor) -> offloadDropped.incrementAndGet());
+        }
+        if (rateLimiter.isEnabled()) {
+            if (logFileWriter != null) {
+                logFileWriter.setRateLimiter(rateLimiter);
+            }
+            getMaintenanceExecutor().scheduleWithFixedDelay(this::reportSuppressedMessages, LogRateLimiter.DEFAULT_REPORT_INTERVAL_MILLIS, LogRateLimiter.DEFAULT_REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            rateLimiter = null;
+        }
+        lastEmergencyDrainNanos = sharedPreferences.getLong(EMERGENCY_DRAIN_PREF_KEY, -1);
         logger = this;
         final Thread.UncaughtExceptionHandler regularHandler = Thread.getDefaultUncaughtExceptionHandler();
         Thread.UncaughtExceptionHandler logHandler = (t, e) -> {
-            logMessage(getExceptionString("Uncaught exception", e));
+            if (isEnabled(LogLevel.ERROR, null)) {
+                dispatchMessage(System.currentTimeMillis(), LogLevel.ERROR, null, null, new LogThrowableMessage("Uncaught exception", e, null), null);
+            }
             sharedPreferences.edit().putBoolean(CRASH_PREF_KEY, true).commit();
-            flush();
+            emergencyDrain();
             if (regularHandler != null) {
                 regularHandler.uncaughtException(t, e);
             }
         };
         Thread.setDefaultUncaughtExceptionHandler(logHandler);
+        if (statsReportIntervalMillis > 0) {
+            getMaintenanceExecutor().scheduleWithFixedDelay(() -> logMessage("Logger stats: " + collectStats()), statsReportIntervalMillis, statsReportIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (traceCache != null && traceReportIntervalMillis > 0) {
+            getMaintenanceExecutor().scheduleWithFixedDelay(this::reportRepeatedTraces, traceReportIntervalMillis, traceReportIntervalMillis, TimeUnit.MILLISECONDS);
+        }
         log(String.format("Logger started. Version: %s", BuildConfig.VERSION));
         log(String.format("Application ID: %s. Version: %s", appId, appVersion));
         log(String.format(Locale.US, "%s (SDK %d)", Build.MODEL, Build.VERSION.SDK_INT));
     }
 
     /**
-     * Zips log files to single zip-archive
+     * Reads counters of file writer and dispatchers
+     *
+     * @return snapshot of logger statistics
+     */
+    private LogStats collectStats() {
+        LogStats stats = new LogStats();
+        LogFileWriter writer = logFileWriter;
+        if (writer != null) {
+            stats.enqueuedCount = writer.getEnqueuedCount();
+            stats.writtenCount = writer.getWrittenCount();
+            stats.droppedCount = writer.getDroppedCount();
+            stats.spilledCount = writer.getSpilledCount();
+            stats.discardedCount = writer.getDiscardedCount();
+            stats.overflowCount = writer.getOverflowCount();
+            stats.queueDepth = writer.getQueueDepth();
+            stats.queueCapacity = writer.getQueueCapacity();
+            stats.writtenBytes = writer.getWrittenBytes();
+            stats.batchSizes = writer.getBatchSizes();
+            stats.writeLatencyNanos = writer.getWriteLatencyNanos();
+        }
+        for (LogDispatcher dispatcher : sinkDispatchers) {
+            stats.sinkDroppedCount += dispatcher.getDroppedCount();
+        }
+        LogRateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            stats.rateLimitedCount = limiter.getRateLimitedCount();
+            stats.sampledOutCount = limiter.getSampledOutCount();
+        }
+        stats.lastEmergencyDrainNanos = lastEmergencyDrainNanos;
+        stats.mainThread = collectMainThreadStats();
+        return stats;
+    }
+
+    /**
+     * Reads counters of main thread logging calls
+     *
+     * @return snapshot of main thread logging statistics
+     */
+    private MainThreadLogStats collectMainThreadStats() {
+        return new MainThreadLogStats(mainThreadCalls.get(), mainThreadNanos.get(), mainThreadMaxNanos.get(), offloadedMessages.get(), offloadDropped.get());
+    }
+
+    /**
+     * Logs repeat counts of deduplicated exceptions, called periodically on maintenance thread
+     */
+    private void reportRepeatedTraces() {
+        String repeats = traceCache.drainRepeats();
+        if (repeats != null) {
+            logMessage(repeats);
+        }
+    }
+
+    /**
+     * Logs counts of messages suppressed by rate limits and sampling since the previous report.
+     * Report bypasses rate limits, so it is written even when application tag is over its budget.
+     */
+    private void reportSuppressedMessages() {
+        String suppressed = rateLimiter.drainSuppressed();
+        if (suppressed != null) {
+            dispatchMessage(System.currentTimeMillis(), LogLevel.WARN, null, null, suppressed, null);
+        }
+    }
+
+    /**
+     * Zips log files to single zip-archive on maintenance thread and waits for the result
      *
      * @return path to zip-archive
      */
     private String zipLog() {
-        try (FileOutputStream fileOutputStream = new FileOutputStream(zipLogPath);
-             ZipOutputStream zipOutputStream = new ZipOutputStream(fileOutputStream)) {
-            if (logsDirectory != null && logsDirectory.exists()) {
-                File[] files = logsDirectory.listFiles();
-                if (files != null) {
-                    for (File file : files) {
-                        if (file.getName().endsWith(LOG_FILE_NAME_SUFFIX)) {
-                            addLogFileToZip(zipOutputStream, file.getAbsolutePath(), file.getName());
-                        }
-                    }
-                }
-            }
+        try {
+            return getMaintenanceExecutor().submit(() -> buildLogZip(null)).get();
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
-        return zipLogPath;
     }
 
     /**
-     * Adds given log file to zipOutputStream object
+     * Builds zip-archive from cached entries of finished log files and current log file,
+     * called on maintenance thread
      *
-     * @param zipOutputStream stream to which log file should be added
-     * @param logFilePath     path to log file which should be added to zip-archive
-     * @param fileName        name of log file in zip-archive
+     * @param progress receiver of building progress, may be null
+     * @return path to zip-archive
+     * @throws CancellationException if building was cancelled
      */
-    private void addLogFileToZip(ZipOutputStream zipOutputStream, String logFilePath, String fileName) {
+    private String buildLogZip(LogArchive.Progress progress) {
+        if (logArchive == null) {
+            return null;
+        }
         try {
-            FileInputStream fileInputStream = new FileInputStream(logFilePath);
-            zipOutputStream.putNextEntry(new ZipEntry(fileName));
-            byte[] buffer = new byte[65545];
-            int count;
-            while ((count = fileInputStream.read(buffer)) > 0) {
-                zipOutputStream.write(buffer, 0, count);
-            }
-            zipOutputStream.closeEntry();
+            logArchive.build(new File(zipLogPath), getLogFiles(), getActiveLogFiles(), progress);
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
+        return zipLogPath;
     }
 
     /**
@@ -766,77 +1874,241 @@ public class InLogger {
      * @param message log message
      */
     private void logMessage(String tag, String context, String message) {
-        logMessage(tag, context, message, false);
+        logMessage(LogLevel.INFO, tag, context, message, null);
     }
 
     /**
-     * Logs message with object context
+     * Logs given message in according with logger settings
      *
-     * @param tag      message tag
-     * @param context  context description
-     * @param message  log message
-     * @param external should log to external storage
+     * @param message message to log
      */
-    private void logMessage(String tag, String context, String message, boolean external) {
-        String m = String.format("%s: %s", context, message);
-        logMessage(tag, m, external);
+    private void logMessage(String message) {
+        logMessage(LogLevel.INFO, null, null, message, null);
     }
 
     /**
      * Logs given message in according with logger settings
      *
-     * @param message message to log
+     * @param level   message level
+     * @param tag     message tag
+     * @param context context description, context object class or null
+     * @param message message string, template or {@link MessageSupplier}
+     * @param args    template arguments or null
      */
-    private void logMessage(String message) {
-        logMessage(null, message, false);
+    private void logMessage(LogLevel level, String tag, Object context, Object message, Object[] args) {
+        logMessage(level, tag, context, message, args, startMainThreadCall());
     }
 
     /**
-     * Logs given message in according with logger settings
+     * Logs given message in according with logger settings.
+     * In main-thread offload mode messages of main thread calls which have to be built
+     * for sinks or crash tail are passed to offload thread as they are.
      *
-     * @param message  message to log
-     * @param external should log to external storage
+     * @param level     message level
+     * @param tag       message tag
+     * @param context   context description, context object class or null
+     * @param message   message string, template or {@link MessageSupplier}
+     * @param args      template arguments or null
+     * @param callStart value of {@link #startMainThreadCall()} at the start of logging call
      */
-    private void logMessage(String tag, String message, boolean external) {
+    private void logMessage(LogLevel level, String tag, Object context, Object message, Object[] args, long callStart) {
         try {
-            if (writeToConsole) {
-                logToConsole(tag, message);
+            if (!isEnabled(level, tag)) {
+                return;
             }
-            if (writeToFile) {
-                logToFile(tag, message);
+            LogRateLimiter limiter = rateLimiter;
+            if (limiter != null && !limiter.tryAcquire(tag != null ? tag : appTag)) {
+                return;
             }
-            if (external && externalLogger != null) {
-                externalLogger.log(tag != null ? tag : appTag, message);
+            long time = System.currentTimeMillis();
+            if (callStart != NOT_MEASURED && offloadExecutor != null && needsBuiltMessage()) {
+                offloadExecutor.execute(() -> {
+                    offloadedMessages.incrementAndGet();
+                    dispatchMessage(time, level, tag, context, message, args);
+                });
+            } else {
+                dispatchMessage(time, level, tag, context, message, args);
             }
         } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            finishMainThreadCall(callStart);
         }
     }
 
+    /**
+     * Passes message to sinks and file writer.
+     * The message is built once if any sink is registered and the same entry is queued to every sink,
+     * otherwise it is built on the file writer thread.
+     * Console, external logger and custom sinks are called on their own threads.
+     *
+     * @param time    message time in milliseconds
+     * @param level   message level
+     * @param tag     message tag
+     * @param context context description, context object class or null
+     * @param message message string, template or {@link MessageSupplier}
+     * @param args    template arguments or null
+     */
+    private void dispatchMessage(long time, LogLevel level, String tag, Object context, Object message, Object[] args) {
+        try {
+            LogDispatcher[] dispatchers = sinkDispatchers;
+            if (dispatchers.length > 0) {
+                String text = LogMessages.join(LogMessages.resolveContext(context), LogMessages.resolveMessage(message, args));
+                LogEntry entry = new LogEntry(time, level, tag != null ? tag : appTag, text);
+                for (LogDispatcher dispatcher : dispatchers) {
+                    dispatcher.offer(entry);
+                }
+                LogRateLimiter limiter = rateLimiter;
+                if (limiter != null && !writeToFile) {
+                    limiter.charge(entry.getTag(), text.length());
+                }
+                message = text;
+                context = null;
+                args = null;
+            }
+            if (writeToFile) {
+                logToFile(time, level, tag, context, message, args);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Checks if messages are built on the calling thread, for sinks or for crash tail
+     *
+     * @return true if logging call builds message
+     */
+    private boolean needsBuiltMessage() {
+        return sinkDispatchers.length > 0 || (logFileWriter != null && logFileWriter.hasCrashTail());
+    }
+
+    /**
+     * Starts measuring of logging call if it is made on the main thread
+     *
+     * @return call start time in nanoseconds or {@link #NOT_MEASURED} for other threads
+     */
+    private long startMainThreadCall() {
+        return Thread.currentThread() == mainThread ? System.nanoTime() : NOT_MEASURED;
+    }
+
+    /**
+     * Adds duration of main thread logging call to statistics
+     *
+     * @param callStart value of {@link #startMainThreadCall()} at the start of logging call
+     */
+    private void finishMainThreadCall(long callStart) {
+        if (callStart == NOT_MEASURED) {
+            return;
+        }
+        long duration = System.nanoTime() - callStart;
+        mainThreadCalls.incrementAndGet();
+        mainThreadNanos.addAndGet(duration);
+        long max = mainThreadMaxNanos.get();
+        while (duration > max && !mainThreadMaxNanos.compareAndSet(max, duration)) {
+            max = mainThreadMaxNanos.get();
+        }
+    }
+
+    /**
+     * Logs bundle content, which is rendered within configured limits when message is written
+     *
+     * @param tag         message tag
+     * @param context     context description, context object class or null
+     * @param event       message preceding bundle content or null
+     * @param description the description of bundle
+     * @param bundle      the bundle
+     */
+    private void logBundle(String tag, Object context, String event, String description, Bundle bundle) {
+        long callStart = startMainThreadCall();
+        if (isEnabled(LogLevel.INFO, tag)) {
+            logMessage(LogLevel.INFO, tag, context, new LogBundleMessage(event, description, bundle, bundleMaxDepth, bundleMaxLength), null, callStart);
+        } else {
+            finishMainThreadCall(callStart);
+        }
+    }
+
+    /**
+     * Logs intent content, which is rendered within bundle limits when message is written
+     *
+     * @param tag         message tag
+     * @param context     context description
+     * @param description the description of intent
+     * @param intent      the intent
+     */
+    private void logIntent(String tag, String context, String description, Intent intent) {
+        long callStart = startMainThreadCall();
+        if (isEnabled(LogLevel.INFO, tag)) {
+            logMessage(LogLevel.INFO, tag, context, new LogIntentMessage(description, intent, bundleMaxDepth, bundleMaxLength), null, callStart);
+        } else {
+            finishMainThreadCall(callStart);
+        }
+    }
+
+    /**
+     * Checks if message with given level and tag passes level filter
+     *
+     * @param level message level
+     * @param tag   message tag, null for application tag
+     * @return true if message should be logged
+     */
+    private boolean isEnabled(LogLevel level, String tag) {
+        return levelFilter.isLoggable(level, tag != null ? tag : appTag);
+    }
+
     /**
      * Writes given message to console
      *
+     * @param level   message level
+     * @param tag     message tag
      * @param message message to log
      */
-    private void logToConsole(String tag, String message) {
-        Log.i(tag != null ? tag : appTag, message);
+    private void logToConsole(LogLevel level, String tag, String message) {
+        Log.println(level.priority, tag != null ? tag : appTag, message);
     }
 
     /**
      * Writes given message to file
      *
-     * @param message message to log
+     * @param time    message time in milliseconds
+     * @param level   message level
+     * @param tag     message tag
+     * @param context context description, context object class or null
+     * @param message message string, template or {@link MessageSupplier}
+     * @param args    template arguments or null
      */
-    private void logToFile(final String tag, final String message) {
-        final String text = String.format("%s:[%s]:\t%s", logDateTimeFormat.format(new Date()), tag != null ? tag : appTag, message);
+    private void logToFile(long time, LogLevel level, String tag, Object context, Object message, Object[] args) {
         if (logFileWriter != null) {
-            logFileWriter.logToFile(text);
+            logFileWriter.logToFile(time, level, tag != null ? tag : appTag, context, message, args);
         }
     }
 
-    private void flush() {
+    /**
+     * Writes messages waiting for offload thread and buffered messages to file from the crashing thread within {@link #EMERGENCY_DRAIN_TIMEOUT_MILLIS},
+     * then passes messages queued for console, external logger and sinks to them within {@link #EMERGENCY_SINK_DRAIN_TIMEOUT_MILLIS}.
+     * Drain duration is saved to preferences, so it is reported by statistics of the next run.
+     */
+    private void emergencyDrain() {
+        long start = System.nanoTime();
+        if (offloadExecutor != null) {
+            List<Runnable> offloaded = new ArrayList<>();
+            offloadExecutor.getQueue().drainTo(offloaded);
+            for (Runnable runnable : offloaded) {
+                runnable.run();
+            }
+        }
+        int written = -1;
         if (logFileWriter != null) {
-            logFileWriter.flush();
+            written = logFileWriter.emergencyDrain(EMERGENCY_DRAIN_TIMEOUT_MILLIS);
+            lastEmergencyDrainNanos = System.nanoTime() - start;
+            sharedPreferences.edit().putLong(EMERGENCY_DRAIN_PREF_KEY, lastEmergencyDrainNanos).commit();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(EMERGENCY_SINK_DRAIN_TIMEOUT_MILLIS);
+        for (LogDispatcher dispatcher : sinkDispatchers) {
+            dispatcher.drain(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+        if (written >= 0 && writeToConsole) {
+            logToConsole(LogLevel.INFO, null, String.format(Locale.US, "%d messages written to log file at crash in %d ms", written, TimeUnit.NANOSECONDS.toMillis(lastEmergencyDrainNanos)));
         }
     }
 
@@ -0,0 +1,353 @@
+package apps.in.android_logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Zip archive of log files built from cached compressed entries.
+ * Finished log files are deflated once and kept in cache directory, building the archive
+ * only compresses the active log file and copies cached entries without recompression.
+ * Not thread safe, all calls are made from logger maintenance thread.
+ */
+final class LogArchive {
+
+    private static final String ENTRY_FILE_NAME_SUFFIX = ".deflate";
+    private static final String TEMP_FILE_NAME_SUFFIX = ".tmp";
+    private static final String ACTIVE_ENTRY_FILE_NAME_PREFIX = "active_";
+    private static final int ENTRY_HEADER_SIZE = 16;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int ZIP_VERSION = 20;
+    private static final int UTF8_NAME_FLAG = 0x0800;
+    private static final int METHOD_DEFLATED = 8;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File cacheDirectory;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer header = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Compressed log file ready to be placed to archive.
+     */
+    private static final class Entry {
+        final String name;
+        final File data;
+        final long crc;
+        final long size;
+        final long compressedSize;
+        final long lastModified;
+        long offset;
+
+        Entry(String name, File data, long crc, long size, long compressedSize, long lastModified) {
+            this.name = name;
+            this.data = data;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Receives archive building progress.
+     */
+    interface Progress {
+
+        /**
+         * Checks if building should be stopped
+         *
+         * @return true to stop building with {@link CancellationException}
+         */
+        boolean isCancelled();
+
+        /**
+         * Called when next log file is compressed or taken from cache
+         *
+         * @param done  number of processed log files
+         * @param total number of log files in archive
+         */
+        void onProgress(int done, int total);
+    }
+
+    /**
+     * @param cacheDirectory directory for compressed entries
+     */
+    LogArchive(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Compresses finished log file to cache if it is not cached yet
+     *
+     * @param logFile finished log file
+     */
+    void cache(File logFile) {
+        try {
+            getCachedEntry(logFile, null);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Removes cached entry of deleted log file
+     *
+     * @param logFile log file
+     */
+    void remove(File logFile) {
+        new File(cacheDirectory, logFile.getName() + ENTRY_FILE_NAME_SUFFIX).delete();
+    }
+
+    /**
+     * Writes zip archive with given log files. Cached entries of log files missing in the list are deleted.
+     *
+     * @param zipFile     archive file
+     * @param logFiles    log files to archive in archive order
+     * @param activeFiles log files which are still written, they are compressed on every call
+     * @param progress    receiver of building progress, may be null
+     * @throws IOException           if archive cannot be written
+     * @throws CancellationException if building was cancelled
+     */
+    void build(File zipFile, List<File> logFiles, Collection<File> activeFiles, Progress progress) throws IOException {
+        List<Entry> entries = new ArrayList<>(logFiles.size());
+        Set<String> cachedNames = new HashSet<>();
+        for (File logFile : logFiles) {
+            checkCancelled(progress);
+            if (logFile.exists()) {
+                String entryFileName;
+                if (activeFiles.contains(logFile)) {
+                    entryFileName = ACTIVE_ENTRY_FILE_NAME_PREFIX + logFile.getName() + ENTRY_FILE_NAME_SUFFIX;
+                    entries.add(compress(logFile, new File(cacheDirectory, entryFileName), progress));
+                } else {
+                    entryFileName = logFile.getName() + ENTRY_FILE_NAME_SUFFIX;
+                    entries.add(getCachedEntry(logFile, progress));
+                }
+                cachedNames.add(entryFileName);
+            }
+            if (progress != null) {
+                progress.onProgress(entries.size(), logFiles.size());
+            }
+        }
+        checkCancelled(progress);
+        File[] cacheFiles = cacheDirectory.listFiles();
+        if (cacheFiles != null) {
+            for (File cacheFile : cacheFiles) {
+                if (!cachedNames.contains(cacheFile.getName())) {
+                    cacheFile.delete();
+                }
+            }
+        }
+        writeZip(zipFile, entries);
+    }
+
+    /**
+     * Returns cached entry of finished log file, compresses the file if entry is missing or damaged
+     *
+     * @param logFile  finished log file
+     * @param progress receiver of building progress, may be null
+     * @return cached entry
+     * @throws IOException if file cannot be compressed
+     */
+    private Entry getCachedEntry(File logFile, Progress progress) throws IOException {
+        File data = new File(cacheDirectory, logFile.getName() + ENTRY_FILE_NAME_SUFFIX);
+        if (data.length() >= ENTRY_HEADER_SIZE) {
+            try (DataInputStream input = new DataInputStream(new FileInputStream(data))) {
+                long crc = input.readLong();
+                long size = input.readLong();
+                if (size == logFile.length()) {
+                    return new Entry(logFile.getName(), data, crc, size, data.length() - ENTRY_HEADER_SIZE, logFile.lastModified());
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return compress(logFile, data, progress);
+    }
+
+    /**
+     * Deflates log file to entry file. Entry is written to temporary file first,
+     * so interrupted compression never leaves damaged entry.
+     *
+     * @param logFile  log file
+     * @param data     entry file
+     * @param progress receiver of building progress, may be null
+     * @return compressed entry
+     * @throws IOException if file cannot be compressed
+     */
+    private Entry compress(File logFile, File data, Progress progress) throws IOException {
+        if (!cacheDirectory.exists()) {
+            cacheDirectory.mkdirs();
+        }
+        File temp = new File(cacheDirectory, data.getName() + TEMP_FILE_NAME_SUFFIX);
+        CRC32 crc = new CRC32();
+        long size = 0;
+        long lastModified = logFile.lastModified();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (InputStream input = new FileInputStream(logFile);
+             FileOutputStream fileOutput = new FileOutputStream(temp)) {
+            fileOutput.write(new byte[ENTRY_HEADER_SIZE]);
+            DeflaterOutputStream output = new DeflaterOutputStream(fileOutput, deflater, BUFFER_SIZE);
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                checkCancelled(progress);
+                crc.update(buffer, 0, count);
+                output.write(buffer, 0, count);
+                size += count;
+            }
+            output.finish();
+            fileOutput.getChannel().position(0);
+            DataOutputStream headerOutput = new DataOutputStream(fileOutput);
+            headerOutput.writeLong(crc.getValue());
+            headerOutput.writeLong(size);
+            headerOutput.flush();
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        } finally {
+            deflater.end();
+        }
+        if (data.exists()) {
+            data.delete();
+        }
+        if (!temp.renameTo(data)) {
+            throw new IOException("Cannot cache " + logFile.getName());
+        }
+        return new Entry(logFile.getName(), data, crc.getValue(), size, data.length() - ENTRY_HEADER_SIZE, lastModified);
+    }
+
+    /**
+     * Writes zip archive by copying compressed entries
+     *
+     * @param zipFile archive file
+     * @param entries compressed entries
+     * @throws IOException if archive cannot be written
+     */
+    private void writeZip(File zipFile, List<Entry> entries) throws IOException {
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(zipFile), BUFFER_SIZE)) {
+            long offset = 0;
+            for (Entry entry : entries) {
+                entry.offset = offset;
+                byte[] name = entry.name.getBytes(UTF8);
+                header.clear();
+                header.putInt(LOCAL_HEADER_SIGNATURE);
+                putEntryInfo(entry, name.length);
+                header.putShort((short) 0);
+                offset += writeHeader(output) + writeBytes(output, name);
+                try (InputStream input = new FileInputStream(entry.data)) {
+                    skipFully(input, ENTRY_HEADER_SIZE);
+                    long remaining = entry.compressedSize;
+                    while (remaining > 0) {
+                        int count = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (count < 0) {
+                            throw new IOException("Unexpected end of " + entry.data.getName());
+                        }
+                        output.write(buffer, 0, count);
+                        remaining -= count;
+                    }
+                }
+                offset += entry.compressedSize;
+            }
+            long centralDirectoryOffset = offset;
+            for (Entry entry : entries) {
+                byte[] name = entry.name.getBytes(UTF8);
+                header.clear();
+                header.putInt(CENTRAL_HEADER_SIGNATURE);
+                header.putShort((short) ZIP_VERSION);
+                putEntryInfo(entry, name.length);
+                header.putShort((short) 0);
+                header.putShort((short) 0);
+                header.putShort((short) 0);
+                header.putShort((short) 0);
+                header.putInt(0);
+                header.putInt((int) entry.offset);
+                offset += writeHeader(output) + writeBytes(output, name);
+            }
+            header.clear();
+            header.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            header.putShort((short) entries.size());
+            header.putShort((short) entries.size());
+            header.putInt((int) (offset - centralDirectoryOffset));
+            header.putInt((int) centralDirectoryOffset);
+            header.putShort((short) 0);
+            writeHeader(output);
+        }
+    }
+
+    /**
+     * Puts header fields shared by local and central headers, up to the name length
+     *
+     * @param entry      compressed entry
+     * @param nameLength length of entry name in bytes
+     */
+    private void putEntryInfo(Entry entry, int nameLength) {
+        header.putShort((short) ZIP_VERSION);
+        header.putShort((short) UTF8_NAME_FLAG);
+        header.putShort((short) METHOD_DEFLATED);
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(entry.lastModified);
+        int year = Math.max(1980, calendar.get(Calendar.YEAR));
+        header.putShort((short) ((calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1)));
+        header.putShort((short) (((year - 1980) << 9) | ((calendar.get(Calendar.MONTH) + 1) << 5) | calendar.get(Calendar.DAY_OF_MONTH)));
+        header.putInt((int) entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) nameLength);
+    }
+
+    /**
+     * Writes prepared header
+     *
+     * @param output archive stream
+     * @return number of written bytes
+     * @throws IOException if writing fails
+     */
+    private int writeHeader(OutputStream output) throws IOException {
+        output.write(header.array(), 0, header.position());
+        return header.position();
+    }
+
+    private static void checkCancelled(Progress progress) {
+        if (progress != null && progress.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    private static int writeBytes(OutputStream output, byte[] bytes) throws IOException {
+        output.write(bytes);
+        return bytes.length;
+    }
+
+    private static void skipFully(InputStream input, long count) throws IOException {
+        while (count > 0) {
+            long skipped = input.skip(count);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package apps.in.android_logger;
+
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Message with bundle content rendered when the message is written.
+ * Bundle items are captured within depth and length limits when message is created:
+ * immutable values are kept and rendered later, other values are rendered to strings at once,
+ * so later changes of the original bundle and its values are not logged.
+ */
+final class LogBundleMessage implements MessageSupplier {
+
+    static final int DEFAULT_MAX_DEPTH = 3;
+    static final int DEFAULT_MAX_LENGTH = 8 * 1024;
+    private static final String TRUNCATED = "\n\t...(truncated)";
+
+    private final String event;
+    private final String description;
+    private final int maxDepth;
+    private final int maxLength;
+    private final Content content;
+    private final String failure;
+    private int remainingLength;
+
+    /**
+     * Items of a bundle captured within limits.
+     */
+    private static final class Content {
+        final int size;
+        final List<String> keys = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+        boolean truncated;
+
+        Content(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * @param event       message preceding bundle content or null
+     * @param description the description of bundle
+     * @param bundle      bundle to log, its items are captured
+     * @param maxDepth    maximum depth of rendered nested bundles
+     * @param maxLength   maximum length of rendered bundle content
+     */
+    LogBundleMessage(String event, String description, Bundle bundle, int maxDepth, int maxLength) {
+        this.event = event;
+        this.description = description;
+        this.maxDepth = maxDepth;
+        this.maxLength = maxLength;
+        Content captured = null;
+        String error = null;
+        if (bundle != null) {
+            remainingLength = maxLength;
+            try {
+                captured = capture(bundle, 1);
+            } catch (Exception e) {
+                error = e.getClass().getSimpleName();
+            }
+        }
+        this.content = captured;
+        this.failure = error;
+    }
+
+    @Override
+    public String get() {
+        StringBuilder stringBuilder = new StringBuilder();
+        if (event != null) {
+            stringBuilder.append(event).append('\n');
+        }
+        int limit = stringBuilder.length() + maxLength;
+        stringBuilder.append('\t').append(description);
+        int contentStart = stringBuilder.length();
+        boolean truncated = false;
+        try {
+            if (failure != null) {
+                appendFailure(stringBuilder, failure);
+            } else if (content != null) {
+                truncated = appendContent(stringBuilder, content, 1, limit);
+            } else {
+                stringBuilder.append(": null");
+            }
+        } catch (Exception e) {
+            stringBuilder.setLength(contentStart);
+            appendFailure(stringBuilder, e.getClass().getSimpleName());
+        }
+        if (stringBuilder.length() > limit) {
+            stringBuilder.setLength(limit);
+            truncated = true;
+        }
+        if (truncated) {
+            stringBuilder.append(TRUNCATED);
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Captures items of the bundle until length limit is reached, nested bundles deeper
+     * than depth limit are captured with items count only
+     *
+     * @param bundle bundle to capture
+     * @param depth  depth of the bundle, 1 for logged bundle
+     * @return captured items
+     */
+    private Content capture(Bundle bundle, int depth) {
+        Set<String> keys = bundle.keySet();
+        Content content = new Content(keys.size());
+        if (depth > maxDepth) {
+            return content;
+        }
+        for (String key : keys) {
+            if (remainingLength <= 0) {
+                content.truncated = true;
+                break;
+            }
+            remainingLength -= depth + String.valueOf(key).length() + 4;
+            Object value = bundle.get(key);
+            if (value instanceof Bundle) {
+                value = capture((Bundle) value, depth + 1);
+            } else if (!isImmutable(value)) {
+                String text = String.valueOf(value);
+                value = text.length() > Math.max(0, remainingLength) ? text.substring(0, Math.max(0, remainingLength)) : text;
+            }
+            if (value instanceof String) {
+                remainingLength -= ((String) value).length();
+            }
+            content.keys.add(key);
+            content.values.add(value);
+        }
+        return content;
+    }
+
+    /**
+     * Checks if value can be rendered later without being affected by changes made meanwhile
+     *
+     * @param value bundle value
+     * @return true if value is null, string, boxed primitive or enum
+     */
+    private static boolean isImmutable(Object value) {
+        return value == null || value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Boolean || value instanceof Double || value instanceof Float || value instanceof Short
+                || value instanceof Byte || value instanceof Character || value instanceof Enum;
+    }
+
+    /**
+     * Appends items count and captured items, nested bundles are indented
+     *
+     * @param stringBuilder target builder
+     * @param content       captured bundle items
+     * @param depth         depth of the bundle, 1 for logged bundle
+     * @param limit         length of builder after which rendering stops
+     * @return true if items were left out because of length limit
+     */
+    private boolean appendContent(StringBuilder stringBuilder, Content content, int depth, int limit) {
+        stringBuilder.append(" (").append(content.size).append(" items)");
+        for (int i = 0; i < content.keys.size(); i++) {
+            if (stringBuilder.length() > limit) {
+                return true;
+            }
+            stringBuilder.append('\n');
+            for (int j = 0; j < depth; j++) {
+                stringBuilder.append('\t');
+            }
+            stringBuilder.append(content.keys.get(i)).append(" = ");
+            Object value = content.values.get(i);
+            if (value instanceof Content) {
+                stringBuilder.append("Bundle");
+                if (appendContent(stringBuilder, (Content) value, depth + 1, limit)) {
+                    return true;
+                }
+            } else {
+                stringBuilder.append(value);
+            }
+        }
+        return content.truncated;
+    }
+
+    /**
+     * Appends short note instead of bundle content which could not be captured or rendered
+     *
+     * @param stringBuilder target builder
+     * @param error         name of the exception
+     */
+    private static void appendFailure(StringBuilder stringBuilder, String error) {
+        stringBuilder.append(": (not logged, ").append(error).append(')');
+    }
+}
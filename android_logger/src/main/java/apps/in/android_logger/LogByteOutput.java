@@ -0,0 +1,14 @@
+package apps.in.android_logger;
+
+/**
+ * Destination of bytes written by encoders.
+ */
+interface LogByteOutput {
+
+    /**
+     * Appends single byte
+     *
+     * @param b byte to append
+     */
+    void put(byte b);
+}
@@ -0,0 +1,279 @@
+package apps.in.android_logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size circular file mapped to memory, which receives a copy of every logged message.
+ * Mapped pages are written back by the system even if the process is killed, so messages
+ * which did not reach the log file before process death are recovered at the next start.
+ * <p>
+ * File starts with header holding magic, capacity, written position and flushed position,
+ * positions grow infinitely and are wrapped by capacity. Every record starts with marker byte
+ * and length, so recovery skips records partially overwritten by wrapping or concurrent writers.
+ * <p>
+ * Flushed position advances only over messages without gaps, so a message which is still
+ * waiting in buffers while later messages are written is recovered after crash.
+ * Messages written to log file after such message may be recovered twice.
+ */
+final class LogCrashTail {
+
+    private static final int MAGIC = 0x494E4C54;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int WRITTEN_OFFSET = 8;
+    private static final int FLUSHED_OFFSET = 16;
+    private static final int HEADER_SIZE = 24;
+    private static final byte RECORD_MARKER = 0x1E;
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 8 + 1 + 2;
+    private static final int MAX_TAG_LENGTH = 0xFFFF;
+    private static final int MAX_PENDING_RANGES = 4096;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicLong position = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final TreeMap<Long, Long> pendingRanges = new TreeMap<>();
+    private long flushed;
+
+    /**
+     * Message recovered from crash tail.
+     */
+    static final class Entry {
+        final long time;
+        final LogLevel level;
+        final String tag;
+        final String message;
+
+        Entry(long time, LogLevel level, String tag, String message) {
+            this.time = time;
+            this.level = level;
+            this.tag = tag;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Writes bytes of a single record at increasing positions.
+     */
+    private final class RecordWriter implements LogByteOutput {
+        private long index;
+
+        RecordWriter(long start) {
+            this.index = start;
+        }
+
+        @Override
+        public void put(byte b) {
+            putByte(index++, b);
+        }
+
+        /**
+         * Writes big-endian number of given size in bytes
+         *
+         * @param value number to write
+         * @param size  number of bytes
+         */
+        void putNumber(long value, int size) {
+            for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+                put((byte) (value >>> shift));
+            }
+        }
+    }
+
+    private LogCrashTail(MappedByteBuffer buffer, int capacity) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Maps crash tail file and resets it, previous content should be recovered before
+     *
+     * @param file     crash tail file
+     * @param capacity size of circular area in bytes
+     * @return mapped crash tail
+     * @throws IOException if file cannot be mapped
+     */
+    static LogCrashTail open(File file, int capacity) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(HEADER_SIZE + capacity);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putLong(WRITTEN_OFFSET, 0);
+            buffer.putLong(FLUSHED_OFFSET, 0);
+            return new LogCrashTail(buffer, capacity);
+        }
+    }
+
+    /**
+     * Reads messages which were copied to crash tail file but not marked as flushed to log file
+     *
+     * @param file crash tail file
+     * @return recovered messages in write order, empty list if there is nothing to recover
+     */
+    static List<Entry> recover(File file) {
+        List<Entry> entries = new ArrayList<>();
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return entries;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (buffer.getInt(0) != MAGIC || capacity <= 0 || HEADER_SIZE + (long) capacity > buffer.capacity()) {
+                return entries;
+            }
+            LogCrashTail tail = new LogCrashTail(buffer, capacity);
+            long end = buffer.getLong(WRITTEN_OFFSET);
+            long position = Math.max(buffer.getLong(FLUSHED_OFFSET), end - capacity);
+            while (position + RECORD_HEADER_SIZE <= end) {
+                int length = tail.getInt(position + 1);
+                if (tail.getByte(position) != RECORD_MARKER || length < RECORD_HEADER_SIZE || position + length > end) {
+                    position++;
+                    continue;
+                }
+                long time = tail.getLong(position + 5);
+                int levelIndex = tail.getByte(position + 13);
+                int tagLength = tail.getShort(position + 14);
+                LogLevel[] levels = LogLevel.values();
+                if (levelIndex < 0 || levelIndex >= levels.length || RECORD_HEADER_SIZE + tagLength > length) {
+                    position++;
+                    continue;
+                }
+                String tag = tail.getString(position + RECORD_HEADER_SIZE, tagLength);
+                String message = tail.getString(position + RECORD_HEADER_SIZE + tagLength, length - RECORD_HEADER_SIZE - tagLength);
+                entries.add(new Entry(time, levels[levelIndex], tag, message));
+                position += length;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return entries;
+    }
+
+    /**
+     * Copies message to crash tail, called from logging threads
+     *
+     * @param time    message time in milliseconds
+     * @param level   message level
+     * @param tag     message tag
+     * @param message message with context
+     * @return position of the message, -1 if message does not fit to crash tail
+     */
+    long append(long time, LogLevel level, String tag, String message) {
+        tag = String.valueOf(tag);
+        message = String.valueOf(message);
+        int tagLength = LogLineEncoder.getUtf8Length(tag);
+        long length = (long) RECORD_HEADER_SIZE + tagLength + LogLineEncoder.getUtf8Length(message);
+        if (length > capacity || tagLength > MAX_TAG_LENGTH) {
+            return -1;
+        }
+        long start = position.getAndAdd(length);
+        RecordWriter writer = new RecordWriter(start);
+        writer.put(RECORD_MARKER);
+        writer.putNumber(length, 4);
+        writer.putNumber(time, 8);
+        writer.put((byte) level.ordinal());
+        writer.putNumber(tagLength, 2);
+        LogLineEncoder.putString(tag, writer);
+        LogLineEncoder.putString(message, writer);
+        long end = start + length;
+        long current;
+        while ((current = written.get()) < end) {
+            if (written.compareAndSet(current, end)) {
+                buffer.putLong(WRITTEN_OFFSET, end);
+                break;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Marks message as written to log file or otherwise handled, so it is not recovered at the next start.
+     * Flushed position advances while messages are marked without gaps. A gap is skipped
+     * when it is overwritten by wrapping or too many messages after it are marked.
+     *
+     * @param start position returned by {@link #append}
+     */
+    synchronized void setWritten(long start) {
+        long end = getRecordEnd(start);
+        if (end > start) {
+            pendingRanges.put(start, end);
+        }
+        long flushedPosition = flushed;
+        while (!pendingRanges.isEmpty()) {
+            Map.Entry<Long, Long> first = pendingRanges.firstEntry();
+            if (first.getKey() > flushedPosition && first.getKey() > position.get() - capacity && pendingRanges.size() <= MAX_PENDING_RANGES) {
+                break;
+            }
+            pendingRanges.pollFirstEntry();
+            flushedPosition = Math.max(flushedPosition, first.getValue());
+        }
+        if (flushedPosition != flushed) {
+            flushed = flushedPosition;
+            buffer.putLong(FLUSHED_OFFSET, flushedPosition);
+        }
+    }
+
+    /**
+     * Reads end of message from its header
+     *
+     * @param start position of the message
+     * @return position after the message, -1 if message is overwritten by wrapping
+     */
+    private long getRecordEnd(long start) {
+        if (position.get() - capacity > start) {
+            return -1;
+        }
+        int length = getInt(start + 1);
+        if (position.get() - capacity > start || length < RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        return start + length;
+    }
+
+    private void putByte(long position, byte value) {
+        buffer.put(HEADER_SIZE + (int) (position % capacity), value);
+    }
+
+    private byte getByte(long position) {
+        return buffer.get(HEADER_SIZE + (int) (position % capacity));
+    }
+
+    private long getNumber(long position, int size) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (getByte(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private int getInt(long position) {
+        return (int) getNumber(position, 4);
+    }
+
+    private int getShort(long position) {
+        return (int) getNumber(position, 2);
+    }
+
+    private long getLong(long position) {
+        return getNumber(position, 8);
+    }
+
+    private String getString(long position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = getByte(position + i);
+        }
+        return new String(bytes, UTF8);
+    }
+}
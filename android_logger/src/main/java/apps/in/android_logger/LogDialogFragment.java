@@ -24,8 +24,7 @@ public abstract class LogDialogFragment extends DialogFragment {
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
-        InLogger.log(this, "Lifecycle: onCreate");
-        InLogger.log(this,"savedInstanceState", savedInstanceState);
+        InLogger.logLifecycle(this, "Lifecycle: onCreate", "savedInstanceState", savedInstanceState);
         super.onCreate(savedInstanceState);
     }
 
@@ -43,8 +42,7 @@ public abstract class LogDialogFragment extends DialogFragment {
 
     @Override
     public void onActivityCreated(@Nullable Bundle savedInstanceState) {
-        InLogger.log(this, "Lifecycle: onActivityCreated");
-        InLogger.log(this,"savedInstanceState", savedInstanceState);
+        InLogger.logLifecycle(this, "Lifecycle: onActivityCreated", "savedInstanceState", savedInstanceState);
         super.onActivityCreated(savedInstanceState);
     }
 
@@ -56,8 +54,7 @@ public abstract class LogDialogFragment extends DialogFragment {
 
     @Override
     public void onSaveInstanceState(@NonNull Bundle outState) {
-        InLogger.log(this, "Lifecycle: onSaveInstanceState");
-        InLogger.log(this,"outState", outState);
+        InLogger.logLifecycle(this, "Lifecycle: onSaveInstanceState", "outState", outState);
         super.onSaveInstanceState(outState);
     }
 
@@ -0,0 +1,166 @@
+package apps.in.android_logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of log entries delivered in batches to a handler on its own daemon thread.
+ * Offering never blocks, entries not fitting the queue are dropped and reported in the next batch.
+ * Handler is never called concurrently, at crash queued entries are delivered from the crashing thread.
+ */
+final class LogDispatcher {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    static final int DEFAULT_BATCH_SIZE = 64;
+    private static final String LOGGER_TAG = "Logger";
+
+    /**
+     * Receiver of entry batches, called on dispatcher thread.
+     */
+    interface BatchHandler {
+        void onBatch(List<LogEntry> batch);
+    }
+
+    private final BlockingQueue<LogEntry> queue;
+    private final BatchHandler handler;
+    private final int batchSize;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final ReentrantLock handlerLock = new ReentrantLock();
+    private final Thread thread;
+    private volatile boolean waiting;
+    private long reportedDroppedCount;
+
+    /**
+     * Creates dispatcher and starts its thread
+     *
+     * @param name          thread name
+     * @param queueCapacity maximum number of queued entries
+     * @param batchSize     maximum number of entries in single batch
+     * @param handler       receiver of batches
+     */
+    LogDispatcher(String name, int queueCapacity, int batchSize, BatchHandler handler) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.handler = handler;
+        thread = new Thread(this::dispatch, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues entry without blocking
+     *
+     * @param entry log entry
+     * @return false if queue is full and entry was dropped
+     */
+    boolean offer(LogEntry entry) {
+        if (queue.offer(entry)) {
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+            return true;
+        }
+        droppedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns number of entries dropped because queue was full
+     *
+     * @return dropped entries count
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Passes queued entries to handler from the calling thread, used when process is going to die.
+     * Waits for the dispatcher thread to finish its current batch, then delivers batches until
+     * queue is empty or timeout is elapsed. Never waits longer than given timeout.
+     *
+     * @param timeoutMillis maximum time to spend in milliseconds
+     * @return number of entries passed to handler by this call
+     */
+    int drain(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int delivered = 0;
+        try {
+            if (!handlerLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        try {
+            while (!queue.isEmpty() && deadline - System.nanoTime() > 0) {
+                delivered += deliverQueued();
+            }
+        } finally {
+            handlerLock.unlock();
+        }
+        return delivered;
+    }
+
+    /**
+     * Waits for entries and passes them to handler until thread is interrupted.
+     * Entries are taken from the queue under handler lock only, so drain never overtakes
+     * an entry held by dispatcher thread.
+     */
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            waiting = true;
+            if (queue.isEmpty()) {
+                LockSupport.park(this);
+            }
+            waiting = false;
+            handlerLock.lock();
+            try {
+                deliverQueued();
+            } finally {
+                handlerLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes up to batch size of queued entries and delivers them, called under handler lock
+     *
+     * @return number of delivered entries
+     */
+    private int deliverQueued() {
+        List<LogEntry> batch = new ArrayList<>(Math.min(batchSize, queue.size() + 1));
+        queue.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int count = batch.size();
+        deliver(batch);
+        return count;
+    }
+
+    /**
+     * Adds report of dropped entries to batch and passes it to handler, called under handler lock
+     *
+     * @param batch entries to deliver
+     */
+    private void deliver(List<LogEntry> batch) {
+        long dropped = droppedCount.get();
+        if (dropped != reportedDroppedCount) {
+            batch.add(new LogEntry(System.currentTimeMillis(), LogLevel.WARN, LOGGER_TAG, String.format(Locale.US, "%d messages dropped (dispatcher queue overflow)", dropped - reportedDroppedCount)));
+            reportedDroppedCount = dropped;
+        }
+        try {
+            handler.onBatch(batch);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package apps.in.android_logger;
+
+/**
+ * Encodes log records to the bytes of log file. Implementations are used from the writer thread only.
+ */
+interface LogEncoder {
+
+    /**
+     * Called when writer starts new empty file, resets encoder state and writes file header if format has one
+     *
+     * @param out output buffer
+     */
+    void startFile(LogOutputBuffer out);
+
+    /**
+     * Appends single record
+     *
+     * @param time    message time in milliseconds
+     * @param level   message level
+     * @param tag     message tag
+     * @param context context description, context object class or null
+     * @param message the message
+     * @param out     output buffer
+     */
+    void encode(long time, LogLevel level, String tag, Object context, String message, LogOutputBuffer out);
+
+    /**
+     * Called when encoded records are written to file
+     */
+    void commit();
+
+    /**
+     * Called when encoded records are lost, forgets state defined since the last {@link #commit()},
+     * so next records do not refer to records missing in file
+     */
+    void rollback();
+}
@@ -0,0 +1,53 @@
+package apps.in.android_logger;
+
+/**
+ * Immutable log message passed to external loggers.
+ */
+public final class LogEntry {
+
+    private final long time;
+    private final LogLevel level;
+    private final String tag;
+    private final String message;
+
+    /**
+     * @param time    message time in milliseconds
+     * @param level   message level
+     * @param tag     message tag
+     * @param message message with context
+     */
+    public LogEntry(long time, LogLevel level, String tag, String message) {
+        this.time = time;
+        this.level = level;
+        this.tag = tag;
+        this.message = message;
+    }
+
+    /**
+     * @return message time in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return message level
+     */
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * @return message tag
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @return message with context
+     */
+    public String getMessage() {
+        return message;
+    }
+}
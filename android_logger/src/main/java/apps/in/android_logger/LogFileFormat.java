@@ -0,0 +1,17 @@
+package apps.in.android_logger;
+
+/**
+ * Format of log files.
+ */
+public enum LogFileFormat {
+
+    /**
+     * Human-readable text lines.
+     */
+    TEXT,
+
+    /**
+     * Compact binary records with interned tags and contexts, decoded to text by the log_decoder tool.
+     */
+    BINARY
+}
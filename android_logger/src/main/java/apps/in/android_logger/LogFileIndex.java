@@ -0,0 +1,375 @@
+package apps.in.android_logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sidecar index of text log file. File is split to blocks of consecutive write batches,
+ * every block is described by fixed-size entry with its byte range, time range and bloom filters
+ * of message tags and words. Search reads entries through memory mapping and scans only blocks
+ * which may contain matching messages.
+ * <p>
+ * Index file starts with header holding magic, version and bloom filter sizes, entries follow it.
+ * Parts of log file not covered by entries, like the block written before a crash, are always scanned.
+ * Writing side is used from the writer thread only.
+ */
+final class LogFileIndex {
+
+    static final String INDEX_FILE_NAME_SUFFIX = ".idx";
+    private static final int MAGIC = 0x494E4C58;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final long BLOCK_SIZE = 64 * 1024;
+    private static final int TAG_BLOOM_LONGS = 8;
+    private static final int TOKEN_BLOOM_LONGS = 256;
+    private static final int BLOOM_HASH_COUNT = 3;
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int ENTRY_SIZE = 8 + 4 + 8 + 8 + 4 + (TAG_BLOOM_LONGS + TOKEN_BLOOM_LONGS) * 8;
+    private static final long HASH_SEED = 0xcbf29ce484222325L;
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    private final FileChannel channel;
+    private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+    private final long[] tagBloom = new long[TAG_BLOOM_LONGS];
+    private final long[] tokenBloom = new long[TOKEN_BLOOM_LONGS];
+    private long blockStart;
+    private long blockEnd;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private int count;
+
+    private LogFileIndex(FileChannel channel, long fileSize) {
+        this.channel = channel;
+        this.blockStart = fileSize;
+        this.blockEnd = fileSize;
+    }
+
+    /**
+     * Opens index of log file for appending, damaged index is rewritten.
+     * The first block starts at the current end of log file.
+     *
+     * @param logFile  log file
+     * @param fileSize current size of log file
+     * @return opened index
+     * @throws IOException if index file cannot be opened
+     */
+    static LogFileIndex open(File logFile, long fileSize) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(getIndexFile(logFile), "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            long entries = (channel.size() - HEADER_SIZE) / ENTRY_SIZE;
+            if (entries >= 0 && isValidHeader(channel)) {
+                channel.truncate(HEADER_SIZE + entries * ENTRY_SIZE);
+            } else {
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(TAG_BLOOM_LONGS).putInt(TOKEN_BLOOM_LONGS);
+                header.flip();
+                writeFully(channel, header, 0);
+            }
+            channel.position(channel.size());
+            return new LogFileIndex(channel, fileSize);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns index file of log file
+     *
+     * @param logFile log file
+     * @return index file placed next to log file
+     */
+    static File getIndexFile(File logFile) {
+        return new File(logFile.getParentFile(), logFile.getName() + INDEX_FILE_NAME_SUFFIX);
+    }
+
+    /**
+     * Returns name of indexed log file
+     *
+     * @param indexFileName name of index file
+     * @return log file name or null if it is not index file
+     */
+    static String getLogFileName(String indexFileName) {
+        if (!indexFileName.endsWith(INDEX_FILE_NAME_SUFFIX)) {
+            return null;
+        }
+        return indexFileName.substring(0, indexFileName.length() - INDEX_FILE_NAME_SUFFIX.length());
+    }
+
+    /**
+     * Adds message encoded to the current block
+     *
+     * @param time    message time in milliseconds
+     * @param tag     message tag
+     * @param context message context or null
+     * @param message the message
+     */
+    void add(long time, String tag, String context, String message) {
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        addToBloom(tagBloom, getHash(String.valueOf(tag)));
+        if (context != null) {
+            scanTokens(context, tokenBloom, null);
+        }
+        if (message != null) {
+            scanTokens(message, tokenBloom, null);
+        }
+        count++;
+    }
+
+    /**
+     * Commits messages added so far as written, writes block entry when block is large enough
+     *
+     * @param fileSize size of log file after write
+     */
+    void onWritten(long fileSize) {
+        blockEnd = fileSize;
+        if (blockEnd - blockStart >= BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Writes the last block and closes index file
+     */
+    void close() {
+        writeBlock();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes entry of the current block if it has written data and starts the next block
+     */
+    private void writeBlock() {
+        if (blockEnd > blockStart && count > 0) {
+            entry.clear();
+            entry.putLong(blockStart);
+            entry.putInt((int) (blockEnd - blockStart));
+            entry.putLong(minTime);
+            entry.putLong(maxTime);
+            entry.putInt(count);
+            for (long bits : tagBloom) {
+                entry.putLong(bits);
+            }
+            for (long bits : tokenBloom) {
+                entry.putLong(bits);
+            }
+            entry.flip();
+            try {
+                writeFully(channel, entry, channel.position());
+                channel.position(channel.position() + ENTRY_SIZE);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        blockStart = blockEnd;
+        minTime = Long.MAX_VALUE;
+        maxTime = Long.MIN_VALUE;
+        count = 0;
+        Arrays.fill(tagBloom, 0);
+        Arrays.fill(tokenBloom, 0);
+    }
+
+    /**
+     * Returns byte ranges of log file which may contain messages matching search.
+     * Ranges not covered by index are always returned.
+     *
+     * @param logFile    log file
+     * @param fileLength current length of log file
+     * @param search     search conditions
+     * @return list of ranges as {start, end} pairs in file order
+     */
+    static List<long[]> getRanges(File logFile, long fileLength, LogSearch search) {
+        List<long[]> ranges = new ArrayList<>();
+        long covered = 0;
+        File indexFile = getIndexFile(logFile);
+        if (indexFile.length() >= HEADER_SIZE) {
+            try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {
+                FileChannel channel = file.getChannel();
+                if (isValidHeader(channel)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    long[] queryTokens = search.getTextTokens();
+                    long tagHash = search.getTag() != null ? getHash(search.getTag()) : 0;
+                    long entries = (buffer.capacity() - HEADER_SIZE) / ENTRY_SIZE;
+                    for (int i = 0; i < entries; i++) {
+                        int position = HEADER_SIZE + i * ENTRY_SIZE;
+                        long start = buffer.getLong(position);
+                        long end = Math.min(fileLength, start + buffer.getInt(position + 8));
+                        if (start < covered || start >= end) {
+                            continue;
+                        }
+                        if (start > covered) {
+                            addRange(ranges, covered, start);
+                        }
+                        if (search.getFromTime() <= buffer.getLong(position + 20) && buffer.getLong(position + 12) <= search.getToTime()
+                                && (search.getTag() == null || mightContain(buffer, position + 32, TAG_BLOOM_LONGS, tagHash))
+                                && mightContainAll(buffer, position + 32 + TAG_BLOOM_LONGS * 8, TOKEN_BLOOM_LONGS, queryTokens)) {
+                            addRange(ranges, start, end);
+                        }
+                        covered = end;
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                ranges.clear();
+                covered = 0;
+            }
+        }
+        if (covered < fileLength) {
+            addRange(ranges, covered, fileLength);
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns hashes of words of the text
+     *
+     * @param text text
+     * @return word hashes, empty array for null text
+     */
+    static long[] getTokens(String text) {
+        if (text == null) {
+            return new long[0];
+        }
+        long[] tokens = new long[text.length() / MIN_TOKEN_LENGTH + 1];
+        return Arrays.copyOf(tokens, scanTokens(text, null, tokens));
+    }
+
+    /**
+     * Finds words of the text, words are sequences of letters and digits compared ignoring case
+     *
+     * @param text  text
+     * @param bloom bloom filter receiving word hashes or null
+     * @param out   array receiving word hashes or null
+     * @return number of words
+     */
+    private static int scanTokens(String text, long[] bloom, long[] out) {
+        int count = 0;
+        int length = 0;
+        long hash = HASH_SEED;
+        int textLength = text.length();
+        for (int i = 0; i <= textLength; i++) {
+            char c = i < textLength ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * HASH_PRIME;
+                length++;
+            } else {
+                if (length >= MIN_TOKEN_LENGTH) {
+                    if (bloom != null) {
+                        addToBloom(bloom, hash);
+                    }
+                    if (out != null && count < out.length) {
+                        out[count] = hash;
+                    }
+                    count++;
+                }
+                length = 0;
+                hash = HASH_SEED;
+            }
+        }
+        return count;
+    }
+
+    private static long getHash(String value) {
+        long hash = HASH_SEED;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * HASH_PRIME;
+        }
+        return hash;
+    }
+
+    private static void addToBloom(long[] bloom, long hash) {
+        for (int i = 0; i < BLOOM_HASH_COUNT; i++) {
+            int bit = getBloomBit(hash, i, bloom.length * 64);
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks bloom filter stored in index
+     *
+     * @param buffer     mapped index
+     * @param position   position of bloom filter
+     * @param bloomLongs size of bloom filter in longs
+     * @param hash       value hash
+     * @return false if value is certainly not in the block
+     */
+    private static boolean mightContain(ByteBuffer buffer, int position, int bloomLongs, long hash) {
+        for (int i = 0; i < BLOOM_HASH_COUNT; i++) {
+            int bit = getBloomBit(hash, i, bloomLongs * 64);
+            if ((buffer.getLong(position + (bit >>> 6) * 8) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean mightContainAll(ByteBuffer buffer, int position, int bloomLongs, long[] hashes) {
+        for (long hash : hashes) {
+            if (!mightContain(buffer, position, bloomLongs, hash)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns bit of bloom filter for given hash function, hash functions are derived from two halves of the hash
+     *
+     * @param hash  value hash
+     * @param index index of hash function
+     * @param bits  size of bloom filter in bits
+     * @return bit index
+     */
+    private static int getBloomBit(long hash, int index, int bits) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return ((h1 + index * h2) & Integer.MAX_VALUE) % bits;
+    }
+
+    /**
+     * Adds range merging it with the previous one if they are adjacent
+     */
+    private static void addRange(List<long[]> ranges, long start, long end) {
+        if (!ranges.isEmpty()) {
+            long[] last = ranges.get(ranges.size() - 1);
+            if (last[1] == start) {
+                last[1] = end;
+                return;
+            }
+        }
+        ranges.add(new long[]{start, end});
+    }
+
+    private static boolean isValidHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // read whole header
+        }
+        header.flip();
+        return header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == VERSION
+                && header.getInt() == TAG_BLOOM_LONGS && header.getInt() == TOKEN_BLOOM_LONGS;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -1,34 +1,212 @@
 package apps.in.android_logger;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.util.LinkedList;
-import java.util.concurrent.Semaphore;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
 
 public class LogFileWriter {
 
-    private final int MAX_BUFFER_SIZE = 1000;
+    private final int MAX_BUFFER_SIZE = 1024;
+    private static final String OVERFLOW_FILE_NAME_SUFFIX = ".overflow.log";
+    private static final String COMPRESSED_FILE_NAME_SUFFIX = ".gz";
+    private static final int COMPRESSION_BUFFER_SIZE = 16 * 1024;
+    private static final String LOGGER_TAG = "Logger";
+    private static final int DROP_OLDEST_ATTEMPTS = 8;
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final int THREAD_BUFFER_SIZE = 256;
+    private static final long REOPEN_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long FLUSH_TIMEOUT_MILLIS = 10000;
+    private static final long FLUSH_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    public static final int DEFAULT_BATCH_SIZE = 128;
+    public static final long DEFAULT_LINGER_MILLIS = 250;
+    public static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 50;
 
-    private final Semaphore bufferSemaphore = new Semaphore(1, true);
-    private final File logFile;
+    private static final int WRITER_RUNNING = 0;
+    private static final int WRITER_IDLE = 1;
+    private static final int WRITER_LINGERING = 2;
 
-    private boolean isWorking = true;
+    private final LogRingBuffer<LogRecord> buffer = new LogRingBuffer<>(MAX_BUFFER_SIZE, LogRecord::new);
+    private final LogOutputBuffer output = new LogOutputBuffer();
+    private final LogRingBuffer.SlotHandler<LogRecord> collector = this::encodeRecord;
+    private final LogRingBuffer.SlotHandler<LogRecord> evictor = this::evictRecord;
+    private final LogRingBuffer.SlotHandler<LogRecord> discarder = LogRecord::clear;
+    private final Object consumerLock = new Object();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Object overflowFileLock = new Object();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final AtomicLong abandonedPublishedCount = new AtomicLong();
+    private final LogHistogram batchSizes = new LogHistogram();
+    private final LogHistogram writeLatency = new LogHistogram();
+    private final LogLineEncoder overflowEncoder = new LogLineEncoder();
+    private final LogOutputBuffer overflowOutput = new LogOutputBuffer();
+    private final LogEncoder encoder;
+    private final boolean compress;
+    private final boolean indexFiles;
+    private final FileRotation rotation;
+    private final long maxFileSize;
+    private final long maxFileAgeMillis;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long lingerMillis;
+    private final List<LogThreadBuffer> threadBuffers;
+    private final ThreadLocal<LogThreadBuffer> localBuffer;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+
+    private volatile boolean isWorking = true;
+    private volatile boolean flushRequested;
+    private volatile int writerState = WRITER_RUNNING;
+    private volatile File logFile;
+    private volatile File overflowFile;
+    private long fileCreatedAt;
+    private volatile LogCrashTail crashTail;
+    private volatile LogRateLimiter rateLimiter;
+    private long[] encodedTailPositions = new long[DEFAULT_BATCH_SIZE];
+    private int encodedTailCount;
     private Thread writerThread;
-    private LinkedList<String> buffer = new LinkedList<>();
+    private FileChannel channel;
+    private OutputStream compressedStream;
+    private byte[] compressionBuffer;
+    private long fileSize;
+    private LogFileIndex index;
+    private List<LogCrashTail.Entry> recoveredEntries;
+    private String emergencyReport;
+    private FileChannel overflowChannel;
+    private long reportedDroppedCount;
+    private long reportedSpilledCount;
+    private long reportedDiscardedCount;
+
+    /**
+     * Settings of log file writer.
+     */
+    static final class Config {
+        int batchSize = DEFAULT_BATCH_SIZE;
+        long lingerMillis = DEFAULT_LINGER_MILLIS;
+        OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+        long blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT_MILLIS;
+        LogFileFormat format = LogFileFormat.TEXT;
+        boolean compress;
+        long maxFileSize;
+        long maxFileAgeMillis;
+        boolean threadBuffers;
+        boolean index;
+    }
+
+    /**
+     * Source of new log files for rotation, called on the writer thread.
+     */
+    interface FileRotation {
+
+        /**
+         * Creates next log file
+         *
+         * @return new empty log file
+         * @throws IOException if file cannot be created
+         */
+        File nextFile() throws IOException;
+
+        /**
+         * Called when writer switched to the next file and previous one is closed
+         *
+         * @param previousFile finished log file
+         */
+        void onFileRotated(File previousFile);
+    }
 
     public LogFileWriter(File logFile) {
+        this(logFile, new Config(), null);
+    }
+
+    /**
+     * Creates writer and starts writer thread. Without log file the first file is taken from rotation
+     * on the writer thread, messages logged meanwhile wait in the buffer and are written in order when the file is ready.
+     *
+     * @param logFile  log file, null to take the first file from rotation
+     * @param config   writer settings
+     * @param rotation source of next log files, null to write single file
+     */
+    LogFileWriter(File logFile, Config config, FileRotation rotation) {
         this.logFile = logFile;
-        if (logFile != null) {
+        this.fileCreatedAt = System.currentTimeMillis();
+        this.rotation = rotation;
+        this.maxFileSize = Math.max(0, config.maxFileSize);
+        this.maxFileAgeMillis = Math.max(0, config.maxFileAgeMillis);
+        this.batchSize = Math.max(1, Math.min(config.batchSize, MAX_BUFFER_SIZE));
+        this.lingerMillis = Math.max(0, config.lingerMillis);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        if (config.threadBuffers) {
+            threadBuffers = new CopyOnWriteArrayList<>();
+            localBuffer = new ThreadLocal<LogThreadBuffer>() {
+                @Override
+                protected LogThreadBuffer initialValue() {
+                    LogThreadBuffer threadBuffer = new LogThreadBuffer(THREAD_BUFFER_SIZE, Thread.currentThread());
+                    threadBuffers.add(threadBuffer);
+                    return threadBuffer;
+                }
+            };
+        } else {
+            threadBuffers = null;
+            localBuffer = null;
+        }
+        this.overflowPolicy = config.overflowPolicy != null ? config.overflowPolicy : OverflowPolicy.DROP_NEWEST;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.blockTimeoutMillis));
+        this.overflowFile = logFile != null ? getOverflowFile(logFile) : null;
+        this.encoder = config.format == LogFileFormat.BINARY ? new BinaryLogEncoder() : new LogLineEncoder();
+        this.compress = config.compress;
+        this.indexFiles = config.index && config.format != LogFileFormat.BINARY && !config.compress;
+        if (logFile != null || rotation != null) {
             writerThread = new Thread(() -> {
                 try {
+                    if (this.logFile == null && !openFirstFile()) {
+                        return;
+                    }
                     while (isWorking) {
-                        writeBufferToFile();
-                        Thread.sleep(500);
+                        try {
+                            awaitBatch();
+                            if (writeBufferToFile(flushRequested) < 0) {
+                                // log file cannot be opened, messages wait in the buffer
+                                long reopenAt = System.nanoTime() + REOPEN_DELAY_NANOS;
+                                long remaining;
+                                while (isWorking && (remaining = reopenAt - System.nanoTime()) > 0) {
+                                    LockSupport.parkNanos(this, remaining);
+                                }
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    while (writeBufferToFile(true) > 0) {
+                        // write everything left in buffers
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
+                } finally {
+                    writeLock.lock();
+                    try {
+                        closeChannel();
+                        discardBuffers();
+                    } finally {
+                        writeLock.unlock();
+                    }
+                    closeOverflowChannel();
                 }
             });
             writerThread.start();
@@ -36,63 +214,970 @@ public class LogFileWriter {
     }
 
     /**
-     * Appends given message to buffer
+     * Appends given message to buffer, the line is formatted on the writer thread
      *
+     * @param time    message time in milliseconds
+     * @param tag     message tag
      * @param message message to log
      */
-    public void logToFile(String message) {
+    public void logToFile(long time, String tag, String message) {
+        logToFile(time, LogLevel.INFO, tag, null, message, null);
+    }
+
+    /**
+     * Appends given message to buffer, context and message are resolved to strings on the writer thread
+     *
+     * @param time    message time in milliseconds
+     * @param level   message level
+     * @param tag     message tag
+     * @param context context description, context object class or null
+     * @param message message string, template or {@link MessageSupplier}
+     * @param args    template arguments or null
+     */
+    void logToFile(long time, LogLevel level, String tag, Object context, Object message, Object[] args) {
+        long tailPosition = -1;
+        LogCrashTail tail = crashTail;
+        if (tail != null) {
+            message = LogMessages.join(LogMessages.resolveContext(context), LogMessages.resolveMessage(message, args));
+            context = null;
+            args = null;
+            tailPosition = tail.append(time, level, tag, (String) message);
+        }
+        if (threadBuffers != null) {
+            LogThreadBuffer threadBuffer = localBuffer.get();
+            LogRecord record = threadBuffer.claim();
+            if (record != null) {
+                record.set(time, level, tag, context, message, args, tailPosition);
+                threadBuffer.publish();
+                wakeUpWriter(threadBuffer.size());
+                return;
+            }
+        }
+        long sequence = buffer.claim();
+        if (sequence < 0) {
+            sequence = claimOnOverflow(time, level, tag, context, message, args);
+        }
+        if (sequence >= 0) {
+            buffer.get(sequence).set(time, level, tag, context, message, args, tailPosition);
+            buffer.publish(sequence);
+            wakeUpWriter(buffer.size());
+        } else if (tailPosition >= 0) {
+            tail.setWritten(tailPosition);
+        }
+    }
+
+    /**
+     * Applies overflow policy when buffer is full
+     *
+     * @param time    message time in milliseconds
+     * @param level   message level
+     * @param tag     message tag
+     * @param context message context
+     * @param message message which does not fit to buffer
+     * @param args    template arguments or null
+     * @return claimed sequence or -1 if message was dropped or spilled
+     */
+    private long claimOnOverflow(long time, LogLevel level, String tag, Object context, Object message, Object[] args) {
+        overflowCount.incrementAndGet();
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                for (int i = 0; i < DROP_OLDEST_ATTEMPTS; i++) {
+                    int evicted;
+                    synchronized (consumerLock) {
+                        evicted = buffer.drain(evictor, 1);
+                    }
+                    if (evicted > 0) {
+                        droppedCount.incrementAndGet();
+                    }
+                    long sequence = buffer.claim();
+                    if (sequence >= 0) {
+                        return sequence;
+                    }
+                }
+                break;
+            case BLOCK:
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                while (isWorking && deadline - System.nanoTime() > 0) {
+                    LockSupport.unpark(writerThread);
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                    long sequence = buffer.claim();
+                    if (sequence >= 0) {
+                        return sequence;
+                    }
+                }
+                break;
+            case SPILL:
+                if (writeToOverflowFile(time, level, tag, context, message, args)) {
+                    spilledCount.incrementAndGet();
+                    LockSupport.unpark(writerThread);
+                    return -1;
+                }
+                break;
+            default:
+                break;
+        }
+        droppedCount.incrementAndGet();
+        LockSupport.unpark(writerThread);
+        return -1;
+    }
+
+    /**
+     * Wakes writer thread up if it is idle or batch became full while writer is lingering
+     *
+     * @param bufferSize number of messages in the buffer which received new message
+     */
+    private void wakeUpWriter(int bufferSize) {
+        int state = writerState;
+        if (state == WRITER_IDLE || (state == WRITER_LINGERING && bufferSize >= batchSize)) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Parks writer thread while buffer is empty, then waits until batch is full
+     * or linger time of the first buffered message is elapsed.
+     * With per-thread buffers writer always lingers, because only messages older than
+     * linger time are merged.
+     */
+    private void awaitBatch() {
+        while (isWorking && isBufferEmpty()) {
+            writerState = WRITER_IDLE;
+            if (isBufferEmpty() && isWorking) {
+                LockSupport.park(this);
+            }
+            writerState = WRITER_RUNNING;
+        }
+        long deadline = System.nanoTime() + lingerNanos;
+        long remaining;
+        while (isWorking && !flushRequested && (threadBuffers != null || buffer.size() < batchSize) && (remaining = deadline - System.nanoTime()) > 0) {
+            writerState = WRITER_LINGERING;
+            if (threadBuffers != null || buffer.size() < batchSize) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            writerState = WRITER_RUNNING;
+        }
+    }
+
+    /**
+     * Checks if shared buffer and all per-thread buffers are empty
+     *
+     * @return true if there are no messages to write
+     */
+    private boolean isBufferEmpty() {
+        if (!buffer.isEmpty()) {
+            return false;
+        }
+        if (threadBuffers != null) {
+            for (LogThreadBuffer threadBuffer : threadBuffers) {
+                if (threadBuffer.size() > 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns number of messages which found buffer full, each message is counted once
+     * regardless of how many times overflow policy retried to claim a slot
+     *
+     * @return number of messages handled by overflow policy
+     */
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * Returns number of messages lost because of full buffer
+     *
+     * @return number of dropped messages
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns number of messages lost because log file could not be written
+     *
+     * @return number of discarded messages
+     */
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+    /**
+     * Returns number of messages written to overflow file
+     *
+     * @return number of spilled messages
+     */
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    /**
+     * Returns number of messages accepted to shared and per-thread buffers
+     *
+     * @return number of enqueued messages
+     */
+    public long getEnqueuedCount() {
+        long count = buffer.getClaimedCount() + abandonedPublishedCount.get();
+        if (threadBuffers != null) {
+            for (LogThreadBuffer threadBuffer : threadBuffers) {
+                count += threadBuffer.getPublishedCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns number of messages waiting for writer in shared and per-thread buffers
+     *
+     * @return approximate number of buffered messages
+     */
+    public int getQueueDepth() {
+        int depth = buffer.size();
+        if (threadBuffers != null) {
+            for (LogThreadBuffer threadBuffer : threadBuffers) {
+                depth += threadBuffer.size();
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Returns capacity of shared buffer
+     *
+     * @return number of messages fitting shared buffer
+     */
+    public int getQueueCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns number of messages written to log files
+     *
+     * @return number of written messages
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Returns number of bytes written to log files, compressed bytes for compressed files
+     *
+     * @return number of written bytes
+     */
+    public long getWrittenBytes() {
+        return writtenBytes.get();
+    }
+
+    /**
+     * Returns distribution of number of messages written at once
+     *
+     * @return batch size histogram
+     */
+    LogStats.Histogram getBatchSizes() {
+        return batchSizes.snapshot();
+    }
+
+    /**
+     * Returns distribution of time spent writing one batch to file, including compression
+     *
+     * @return write latency histogram in nanoseconds
+     */
+    LogStats.Histogram getWriteLatencyNanos() {
+        return writeLatency.snapshot();
+    }
+
+    /**
+     * Appends buffer to log file
+     *
+     * @param complete true to write all merged messages regardless of linger time
+     * @return number of messages written to file
+     */
+    private int writeBufferToFile(boolean complete) {
+        writeLock.lock();
         try {
-            bufferSemaphore.acquire();
-            if (buffer.size() < MAX_BUFFER_SIZE) {
-                buffer.add(message);
+            return writeBufferToFile(MAX_BUFFER_SIZE, complete);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drains up to given number of messages and writes them to log file, called under write lock.
+     * Nothing is drained while log file cannot be opened, so messages wait in the buffer.
+     * Pending messages recovered from crash tail are written ahead of drained messages.
+     *
+     * @param limit    maximum number of messages to drain
+     * @param complete true to write all merged messages regardless of linger time
+     * @return number of messages written to file, -1 if log file cannot be opened
+     */
+    private int writeBufferToFile(int limit, boolean complete) {
+        FileChannel channel;
+        try {
+            channel = openChannel();
+        } catch (Exception e) {
+            e.printStackTrace();
+            closeChannel();
+            output.clear();
+            return -1;
+        }
+        int recovered = encodeRecovered();
+        int count;
+        synchronized (consumerLock) {
+            if (threadBuffers != null) {
+                count = mergeBuffers(limit, complete ? Long.MAX_VALUE : System.currentTimeMillis() - lingerMillis);
+            } else {
+                count = buffer.drain(collector, limit);
             }
+        }
+        reportOverflow();
+        if (emergencyReport != null) {
+            encodeLoggerMessage(emergencyReport);
+            emergencyReport = null;
+        }
+        if (output.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long previousSize = fileSize;
+        try {
+            writeOutput(channel);
         } catch (Exception e) {
             e.printStackTrace();
+            discardBatch(previousSize, recovered + count);
+            return 0;
         } finally {
-            bufferSemaphore.release();
+            output.clear();
+        }
+        encoder.commit();
+        if (index != null) {
+            index.onWritten(fileSize);
         }
+        writeLatency.record(System.nanoTime() - start);
+        writtenBytes.addAndGet(fileSize - previousSize);
+        if (count > 0) {
+            writtenCount.addAndGet(count);
+            batchSizes.record(count);
+        }
+        markTailFlushed();
+        rotateIfNeeded();
+        return count;
     }
 
     /**
-     * Appends buffer to log file
+     * Handles batch which could not be written: counts its messages as discarded, cuts partially written
+     * batch from uncompressed file and lets encoder forget state defined by the batch,
+     * so the next batch does not refer to lost records. Channel is reopened by the next write.
+     * Crash tail copies of discarded messages are not marked, so they are recovered at the next start.
+     *
+     * @param previousSize file size before the batch
+     * @param count        number of messages in the batch
+     */
+    private void discardBatch(long previousSize, int count) {
+        discardedCount.addAndGet(count);
+        encodedTailCount = 0;
+        encoder.rollback();
+        if (compressedStream == null && channel != null) {
+            try {
+                channel.truncate(previousSize);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        closeChannel();
+    }
+
+    /**
+     * Releases messages left in buffers when writer stops without being able to write them.
+     * Their crash tail copies are not marked, so they are recovered at the next start.
      */
-    private void writeBufferToFile() {
-        LinkedList<String> localBuffer = null;
+    private void discardBuffers() {
+        int count;
+        synchronized (consumerLock) {
+            count = buffer.drain(discarder, MAX_BUFFER_SIZE);
+            if (threadBuffers != null) {
+                for (LogThreadBuffer threadBuffer : threadBuffers) {
+                    LogRecord record;
+                    while ((record = threadBuffer.peek()) != null) {
+                        record.clear();
+                        threadBuffer.release();
+                        count++;
+                    }
+                }
+            }
+        }
+        discardedCount.addAndGet(count);
+    }
+
+    /**
+     * Encodes messages from per-thread buffers and shared buffer in timestamp order.
+     * Only messages not newer than watermark are taken, so messages published later by other threads
+     * with earlier timestamps are still merged in order as long as they are published within linger time.
+     *
+     * @param limit     maximum number of messages to encode
+     * @param watermark time of the newest message to take in milliseconds
+     * @return number of encoded messages
+     */
+    private int mergeBuffers(int limit, long watermark) {
+        LogThreadBuffer[] sources = threadBuffers.toArray(new LogThreadBuffer[0]);
+        int count = 0;
+        while (count < limit) {
+            LogThreadBuffer source = null;
+            LogRecord next = buffer.peek();
+            if (next != null && next.time > watermark) {
+                next = null;
+            }
+            for (LogThreadBuffer threadBuffer : sources) {
+                LogRecord record = threadBuffer.peek();
+                if (record != null && record.time <= watermark && (next == null || record.time < next.time)) {
+                    next = record;
+                    source = threadBuffer;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            encodeRecord(next);
+            if (source != null) {
+                source.release();
+            } else {
+                buffer.release();
+            }
+            count++;
+        }
+        for (LogThreadBuffer threadBuffer : sources) {
+            if (threadBuffer.isAbandoned() && threadBuffer.size() == 0) {
+                threadBuffers.remove(threadBuffer);
+                abandonedPublishedCount.addAndGet(threadBuffer.getPublishedCount());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes buffered messages to file from the calling thread, used when process is going to die.
+     * Waits for the writer thread to finish its current batch, then writes small batches until
+     * buffer is empty or timeout is elapsed. Never waits longer than given timeout.
+     * Number of written messages and time spent are written to the log file as the last line.
+     *
+     * @param timeoutMillis maximum time to spend in milliseconds
+     * @return number of messages written to file by this call
+     */
+    int emergencyDrain(long timeoutMillis) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int written = 0;
         try {
-            bufferSemaphore.acquire();
-            if (!buffer.isEmpty()) {
-                localBuffer = buffer;
-                buffer = new LinkedList<>();
+            if (!writeLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return 0;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        try {
+            while (!isBufferEmpty() && deadline - System.nanoTime() > 0) {
+                int count = writeBufferToFile(batchSize, true);
+                if (count <= 0) {
+                    break;
+                }
+                written += count;
+            }
+            emergencyReport = String.format(Locale.US, "%d messages written at crash in %d ms", written, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            writeBufferToFile(0, true);
         } finally {
-            bufferSemaphore.release();
-        }
-        if (localBuffer != null) {
-            try (
-                    FileOutputStream fos = new FileOutputStream(logFile, true);
-                    OutputStreamWriter osw = new OutputStreamWriter(fos);
-                    BufferedWriter bw = new BufferedWriter(osw)) {
-                for (String message : localBuffer) {
-                    bw.newLine();
-                    bw.append(message);
+            writeLock.unlock();
+        }
+        return written;
+    }
+
+    /**
+     * Encodes drained record to output buffer and releases it
+     *
+     * @param record drained record
+     */
+    private void encodeRecord(LogRecord record) {
+        String message = LogMessages.resolveMessage(record.message, record.args);
+        LogRateLimiter limiter = rateLimiter;
+        if (limiter != null && message != null) {
+            try {
+                limiter.charge(record.tag, message.length());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        if (index != null) {
+            String context = LogMessages.resolveContext(record.context);
+            encoder.encode(record.time, record.level, record.tag, context, message, output);
+            index.add(record.time, record.tag, context, message);
+        } else {
+            encoder.encode(record.time, record.level, record.tag, record.context, message, output);
+        }
+        if (record.tailPosition >= 0) {
+            if (encodedTailCount == encodedTailPositions.length) {
+                encodedTailPositions = Arrays.copyOf(encodedTailPositions, encodedTailCount * 2);
+            }
+            encodedTailPositions[encodedTailCount++] = record.tailPosition;
+        }
+        record.clear();
+    }
+
+    /**
+     * Releases record dropped by overflow policy, its crash tail copy is not recovered
+     *
+     * @param record dropped record
+     */
+    private void evictRecord(LogRecord record) {
+        LogCrashTail tail = crashTail;
+        if (tail != null && record.tailPosition >= 0) {
+            tail.setWritten(record.tailPosition);
+        }
+        record.clear();
+    }
+
+    /**
+     * Adds synthetic lines about messages lost or spilled since the previous report
+     */
+    private void reportOverflow() {
+        long dropped = droppedCount.get();
+        if (dropped != reportedDroppedCount) {
+            encodeLoggerMessage(String.format(Locale.US, "%d messages dropped (log buffer overflow)", dropped - reportedDroppedCount));
+            reportedDroppedCount = dropped;
+        }
+        long spilled = spilledCount.get();
+        if (spilled != reportedSpilledCount) {
+            encodeLoggerMessage(String.format(Locale.US, "%d messages written to %s (log buffer overflow)", spilled - reportedSpilledCount, overflowFile.getName()));
+            reportedSpilledCount = spilled;
+        }
+        long discarded = discardedCount.get();
+        if (discarded != reportedDiscardedCount) {
+            encodeLoggerMessage(String.format(Locale.US, "%d messages lost (log file write failed)", discarded - reportedDiscardedCount));
+            reportedDiscardedCount = discarded;
+        }
+    }
+
+    /**
+     * Encodes warning of the logger itself to output buffer
+     *
+     * @param message warning text
+     */
+    private void encodeLoggerMessage(String message) {
+        long time = System.currentTimeMillis();
+        encoder.encode(time, LogLevel.WARN, LOGGER_TAG, null, message, output);
+        if (index != null) {
+            index.add(time, LOGGER_TAG, null, message);
+        }
+    }
+
+    /**
+     * Writes message directly to overflow file from the calling thread
+     *
+     * @param time    message time in milliseconds
+     * @param level   message level
+     * @param tag     message tag
+     * @param context message context
+     * @param message message to write
+     * @param args    template arguments or null
+     * @return true if message was written
+     */
+    private boolean writeToOverflowFile(long time, LogLevel level, String tag, Object context, Object message, Object[] args) {
+        synchronized (overflowFileLock) {
+            if (!isWorking || overflowFile == null) {
+                return false;
+            }
+            try {
+                if (overflowChannel == null) {
+                    overflowChannel = new FileOutputStream(overflowFile, true).getChannel();
                 }
+                overflowEncoder.encode(time, level, tag, LogMessages.resolveContext(context), LogMessages.resolveMessage(message, args), overflowOutput);
+                writeFully(overflowChannel, overflowOutput.flip(), overflowOutput.chunkCount());
+                return true;
             } catch (Exception e) {
                 e.printStackTrace();
+                closeOverflowChannel();
+                return false;
+            } finally {
+                overflowOutput.clear();
+            }
+        }
+    }
+
+    /**
+     * Closes overflow file channel
+     */
+    private void closeOverflowChannel() {
+        synchronized (overflowFileLock) {
+            if (overflowChannel != null) {
+                try {
+                    overflowChannel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                overflowChannel = null;
+            }
+        }
+    }
+
+    /**
+     * Returns overflow file for given log file
+     *
+     * @param logFile log file
+     * @return overflow file placed next to log file
+     */
+    private static File getOverflowFile(File logFile) {
+        String name = logFile.getName();
+        if (name.endsWith(COMPRESSED_FILE_NAME_SUFFIX)) {
+            name = name.substring(0, name.length() - COMPRESSED_FILE_NAME_SUFFIX.length());
+        }
+        int extension = name.lastIndexOf('.');
+        return new File(logFile.getParentFile(), (extension > 0 ? name.substring(0, extension) : name) + OVERFLOW_FILE_NAME_SUFFIX);
+    }
+
+    /**
+     * Writes given buffers to channel with gathering writes
+     *
+     * @param channel target channel
+     * @param buffers buffers to write
+     * @param count   number of buffers to write
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer[] buffers, int count) throws IOException {
+        int offset = 0;
+        while (offset < count) {
+            channel.write(buffers, offset, count - offset);
+            while (offset < count && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+    }
+
+    /**
+     * Writes output buffer to log file. Compressed data is sync-flushed after every batch,
+     * so everything written before a crash can be decompressed.
+     *
+     * @param channel log file channel
+     * @throws IOException if writing fails
+     */
+    private void writeOutput(FileChannel channel) throws IOException {
+        ByteBuffer[] chunks = output.flip();
+        int count = output.chunkCount();
+        if (compressedStream != null) {
+            for (int i = 0; i < count; i++) {
+                ByteBuffer chunk = chunks[i];
+                while (chunk.hasRemaining()) {
+                    int length = Math.min(chunk.remaining(), compressionBuffer.length);
+                    chunk.get(compressionBuffer, 0, length);
+                    compressedStream.write(compressionBuffer, 0, length);
+                }
+            }
+            compressedStream.flush();
+        } else {
+            writeFully(channel, chunks, count);
+        }
+        fileSize = channel.position();
+    }
+
+    /**
+     * Sets crash tail receiving copy of every message. Messages are resolved on the calling thread
+     * while crash tail is set, because they have to be copied before they are written to file.
+     * This cancels deferred formatting: every template, supplier and context is built by the logging thread.
+     *
+     * @param crashTail crash tail or null to disable copying
+     */
+    void setCrashTail(LogCrashTail crashTail) {
+        this.crashTail = crashTail;
+    }
+
+    /**
+     * Sets rate limiter charged with length of every written message
+     *
+     * @param rateLimiter rate limiter or null
+     */
+    void setRateLimiter(LogRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Writes messages recovered from crash tail of the previous run ahead of buffered messages.
+     * Entries are written directly to the log file, they do not pass through the buffer,
+     * so they are neither dropped nor block logging threads. If called while the first file
+     * is being created, entries are written as soon as the file is opened.
+     *
+     * @param entries recovered messages
+     */
+    void logRecovered(List<LogCrashTail.Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            recoveredEntries = entries;
+            if (logFile != null) {
+                writeBufferToFile(0, true);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Encodes pending recovered messages to output buffer, called under write lock
+     *
+     * @return number of encoded messages
+     */
+    private int encodeRecovered() {
+        List<LogCrashTail.Entry> entries = recoveredEntries;
+        if (entries == null) {
+            return 0;
+        }
+        recoveredEntries = null;
+        encodeLoggerMessage(String.format(Locale.US, "%d messages of previous run recovered from crash tail", entries.size()));
+        for (LogCrashTail.Entry entry : entries) {
+            encoder.encode(entry.time, entry.level, entry.tag, null, entry.message, output);
+            if (index != null) {
+                index.add(entry.time, entry.tag, null, entry.message);
+            }
+        }
+        return entries.size();
+    }
+
+    /**
+     * Checks if messages are resolved on the calling thread to be copied to crash tail
+     *
+     * @return true if crash tail is set
+     */
+    boolean hasCrashTail() {
+        return crashTail != null;
+    }
+
+    /**
+     * Marks messages of the last batch in crash tail, so they are not recovered at the next start.
+     * Called after the batch is written.
+     */
+    private void markTailFlushed() {
+        LogCrashTail tail = crashTail;
+        if (tail != null) {
+            for (int i = 0; i < encodedTailCount; i++) {
+                tail.setWritten(encodedTailPositions[i]);
             }
         }
+        encodedTailCount = 0;
+    }
+
+    /**
+     * Switches to the next log file when current one exceeds size or age limit.
+     * Next file is opened on the next write, so encoder writes its header to it.
+     */
+    private void rotateIfNeeded() {
+        if (rotation == null) {
+            return;
+        }
+        boolean tooLarge = maxFileSize > 0 && fileSize >= maxFileSize;
+        boolean tooOld = maxFileAgeMillis > 0 && System.currentTimeMillis() - fileCreatedAt >= maxFileAgeMillis;
+        if (!tooLarge && !tooOld) {
+            return;
+        }
+        File nextFile;
+        try {
+            nextFile = rotation.nextFile();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+        closeChannel();
+        File previousFile = logFile;
+        synchronized (overflowFileLock) {
+            closeOverflowChannel();
+            overflowFile = getOverflowFile(nextFile);
+        }
+        logFile = nextFile;
+        fileCreatedAt = System.currentTimeMillis();
+        fileSize = 0;
+        rotation.onFileRotated(previousFile);
     }
 
-    public void flush(){
+    /**
+     * Takes the first log file from rotation. Writer stops if the file cannot be created,
+     * then messages are dropped according to overflow policy.
+     *
+     * @return true if the first file is created
+     */
+    private boolean openFirstFile() {
+        File firstFile;
         try {
-            Thread.sleep(500);
+            firstFile = rotation.nextFile();
+        } catch (Exception e) {
+            e.printStackTrace();
             isWorking = false;
-            writerThread.join(10000);
-        } catch (Exception e){
+            return false;
+        }
+        writeLock.lock();
+        try {
+            synchronized (overflowFileLock) {
+                overflowFile = getOverflowFile(firstFile);
+            }
+            logFile = firstFile;
+            fileCreatedAt = System.currentTimeMillis();
+            if (recoveredEntries != null) {
+                writeBufferToFile(0, true);
+            }
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns log file which is currently written
+     *
+     * @return current log file, null until the first file is created
+     */
+    File getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Returns overflow file of the current log file
+     *
+     * @return current overflow file
+     */
+    File getCurrentOverflowFile() {
+        return overflowFile;
+    }
+
+    /**
+     * Returns size of the log file on disk, compressed size for compressed files
+     *
+     * @return file size in bytes
+     */
+    long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Returns channel of log file, opens it in append mode if it is not opened yet.
+     * Encoder is notified when the file is empty, so file header is written before any record.
+     * Compressed file gets new gzip member on every opening, index of text file is opened with the file.
+     *
+     * @return log file channel
+     * @throws IOException if file cannot be opened
+     */
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = new FileOutputStream(logFile, true).getChannel();
+            fileSize = channel.size();
+            if (fileSize == 0) {
+                encoder.startFile(output);
+            }
+            if (compress) {
+                if (compressionBuffer == null) {
+                    compressionBuffer = new byte[COMPRESSION_BUFFER_SIZE];
+                }
+                compressedStream = new GZIPOutputStream(Channels.newOutputStream(channel), COMPRESSION_BUFFER_SIZE, true);
+            }
+            if (indexFiles) {
+                try {
+                    index = LogFileIndex.open(logFile, fileSize);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Closes log file channel, it will be reopened on next write
+     */
+    private void closeChannel() {
+        if (index != null) {
+            index.close();
+            index = null;
+        }
+        if (compressedStream != null) {
+            try {
+                compressedStream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            compressedStream = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Writes messages logged before this call and stops writer thread.
+     * Writer is woken up to write buffered messages without lingering, then stopped
+     * when it consumed them. Never waits longer than {@link #FLUSH_TIMEOUT_MILLIS}.
+     */
+    public void flush() {
+        Thread thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_TIMEOUT_MILLIS);
+        awaitConsumed(thread, deadline);
+        isWorking = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
             e.printStackTrace();
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Waits until writer thread consumes messages published to buffers before the call
+     *
+     * @param thread   writer thread
+     * @param deadline time to give up at in nanoseconds
+     */
+    private void awaitConsumed(Thread thread, long deadline) {
+        long target = buffer.getClaimedCount();
+        LogThreadBuffer[] sources = threadBuffers != null ? threadBuffers.toArray(new LogThreadBuffer[0]) : new LogThreadBuffer[0];
+        long[] targets = new long[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            targets[i] = sources[i].getPublishedCount();
+        }
+        flushRequested = true;
+        try {
+            while (thread.isAlive() && deadline - System.nanoTime() > 0 && !isConsumed(target, sources, targets)) {
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(this, FLUSH_PARK_NANOS);
+            }
+        } finally {
+            flushRequested = false;
+        }
+    }
+
+    /**
+     * Checks if consumer positions of shared and per-thread buffers reached given targets
+     *
+     * @param target  claimed count of shared buffer
+     * @param sources per-thread buffers
+     * @param targets published counts of per-thread buffers
+     * @return true if all messages up to targets are consumed
+     */
+    private boolean isConsumed(long target, LogThreadBuffer[] sources, long[] targets) {
+        if (buffer.getReleasedCount() < target) {
+            return false;
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i].getReleasedCount() < targets[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
 }
@@ -22,29 +22,25 @@ public abstract class LogFragment extends Fragment {
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
-        InLogger.log(this, "Lifecycle: onCreate");
-        InLogger.log(this,"savedInstanceState", savedInstanceState);
+        InLogger.logLifecycle(this, "Lifecycle: onCreate", "savedInstanceState", savedInstanceState);
         super.onCreate(savedInstanceState);
     }
 
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
-        InLogger.log(this, "Lifecycle: onViewCreated");
-        InLogger.log(this,"savedInstanceState", savedInstanceState);
+        InLogger.logLifecycle(this, "Lifecycle: onViewCreated", "savedInstanceState", savedInstanceState);
         super.onViewCreated(view, savedInstanceState);
     }
 
     @Override
     public void onActivityCreated(@Nullable Bundle savedInstanceState) {
-        InLogger.log(this, "Lifecycle: onActivityCreated");
-        InLogger.log(this,"savedInstanceState", savedInstanceState);
+        InLogger.logLifecycle(this, "Lifecycle: onActivityCreated", "savedInstanceState", savedInstanceState);
         super.onActivityCreated(savedInstanceState);
     }
 
     @Override
     public void onViewStateRestored(@Nullable Bundle savedInstanceState) {
-        InLogger.log(this, "Lifecycle: onViewStateRestored");
-        InLogger.log(this,"savedInstanceState", savedInstanceState);
+        InLogger.logLifecycle(this, "Lifecycle: onViewStateRestored", "savedInstanceState", savedInstanceState);
         super.onViewStateRestored(savedInstanceState);
     }
 
@@ -62,8 +58,7 @@ public abstract class LogFragment extends Fragment {
 
     @Override
     public void onSaveInstanceState(@NonNull Bundle outState) {
-        InLogger.log(this, "Lifecycle: onSaveInstanceState");
-        InLogger.log(this,"outState", outState);
+        InLogger.logLifecycle(this, "Lifecycle: onSaveInstanceState", "outState", outState);
         super.onSaveInstanceState(outState);
     }
 
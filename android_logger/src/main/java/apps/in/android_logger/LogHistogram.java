@@ -0,0 +1,47 @@
+package apps.in.android_logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values with power-of-two buckets.
+ * Bucket 0 counts zeros, bucket i counts values from 2^(i-1) to 2^i - 1.
+ */
+final class LogHistogram {
+
+    static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Adds value to histogram, negative values are counted as zeros
+     *
+     * @param value recorded value
+     */
+    void record(long value) {
+        value = Math.max(0, value);
+        buckets.incrementAndGet(BUCKET_COUNT - Long.numberOfLeadingZeros(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Copies current state, values recorded concurrently may be partially included
+     *
+     * @return histogram snapshot
+     */
+    LogStats.Histogram snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new LogStats.Histogram(counts, count.get(), sum.get(), max.get());
+    }
+}
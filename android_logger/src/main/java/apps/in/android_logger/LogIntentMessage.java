@@ -0,0 +1,43 @@
+package apps.in.android_logger;
+
+import android.content.ComponentName;
+import android.content.Intent;
+
+/**
+ * Message with intent content rendered when the message is written.
+ * Action, component and extras are captured when message is created,
+ * extras are rendered on the thread which writes the message within bundle limits.
+ */
+final class LogIntentMessage implements MessageSupplier {
+
+    private final String description;
+    private final boolean isNull;
+    private final String action;
+    private final ComponentName component;
+    private final LogBundleMessage extras;
+
+    /**
+     * @param description the description of intent
+     * @param intent      intent to log, its extras are captured
+     * @param maxDepth    maximum depth of rendered nested bundles of extras
+     * @param maxLength   maximum length of rendered extras
+     */
+    LogIntentMessage(String description, Intent intent, int maxDepth, int maxLength) {
+        this.description = description;
+        isNull = intent == null;
+        action = intent != null ? intent.getAction() : null;
+        component = intent != null ? intent.getComponent() : null;
+        extras = intent != null ? new LogBundleMessage(null, "EXTRAS", intent.getExtras(), maxDepth, maxLength) : null;
+    }
+
+    @Override
+    public String get() {
+        if (isNull) {
+            return "\t" + description + ": null";
+        }
+        return description +
+                "\nACTION: " + action +
+                "\nCOMPONENT NAME: " + (component != null ? component.getShortClassName() : "null") +
+                "\n" + extras.get();
+    }
+}
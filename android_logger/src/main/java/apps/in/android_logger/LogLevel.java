@@ -0,0 +1,23 @@
+package apps.in.android_logger;
+
+import android.util.Log;
+
+/**
+ * Severity of log message.
+ */
+public enum LogLevel {
+
+    VERBOSE(Log.VERBOSE, 'V'),
+    DEBUG(Log.DEBUG, 'D'),
+    INFO(Log.INFO, 'I'),
+    WARN(Log.WARN, 'W'),
+    ERROR(Log.ERROR, 'E');
+
+    final int priority;
+    final char letter;
+
+    LogLevel(int priority, char letter) {
+        this.priority = priority;
+        this.letter = letter;
+    }
+}
@@ -0,0 +1,73 @@
+package apps.in.android_logger;
+
+import java.util.HashMap;
+
+/**
+ * Immutable set of minimum log levels, global and per tag.
+ */
+final class LogLevelFilter {
+
+    private final LogLevel globalLevel;
+    private final HashMap<String, LogLevel> tagLevels;
+    private final int lowestLevel;
+
+    LogLevelFilter(LogLevel globalLevel) {
+        this(globalLevel, new HashMap<>());
+    }
+
+    private LogLevelFilter(LogLevel globalLevel, HashMap<String, LogLevel> tagLevels) {
+        this.globalLevel = globalLevel;
+        this.tagLevels = tagLevels;
+        int lowest = globalLevel.ordinal();
+        for (LogLevel level : tagLevels.values()) {
+            lowest = Math.min(lowest, level.ordinal());
+        }
+        this.lowestLevel = lowest;
+    }
+
+    /**
+     * Checks if message with given level and tag should be logged
+     *
+     * @param level message level
+     * @param tag   message tag
+     * @return true if message passes the filter
+     */
+    boolean isLoggable(LogLevel level, String tag) {
+        int ordinal = level.ordinal();
+        if (ordinal < lowestLevel) {
+            return false;
+        }
+        if (tagLevels.isEmpty() || tag == null) {
+            return ordinal >= globalLevel.ordinal();
+        }
+        LogLevel tagLevel = tagLevels.get(tag);
+        return ordinal >= (tagLevel != null ? tagLevel : globalLevel).ordinal();
+    }
+
+    /**
+     * Creates filter with changed global level
+     *
+     * @param level minimum level for tags without own level
+     * @return new filter
+     */
+    LogLevelFilter withGlobalLevel(LogLevel level) {
+        return new LogLevelFilter(level, tagLevels);
+    }
+
+    /**
+     * Creates filter with changed level of given tag
+     *
+     * @param tag   message tag
+     * @param level minimum level of the tag, null to use global level
+     * @return new filter
+     */
+    LogLevelFilter withTagLevel(String tag, LogLevel level) {
+        HashMap<String, LogLevel> levels = new HashMap<>(tagLevels);
+        if (level != null) {
+            levels.put(tag, level);
+        } else {
+            levels.remove(tag);
+        }
+        return new LogLevelFilter(globalLevel, levels);
+    }
+}
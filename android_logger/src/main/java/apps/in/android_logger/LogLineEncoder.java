@@ -0,0 +1,172 @@
+package apps.in.android_logger;
+
+import java.util.Calendar;
+
+/**
+ * Encodes log lines to UTF-8 bytes without intermediate objects.
+ * The date part of the timestamp is cached and rebuilt once per second. Not thread-safe.
+ */
+final class LogLineEncoder implements LogEncoder {
+
+    private static final String NULL = "null";
+
+    private final Calendar calendar = Calendar.getInstance();
+    private final byte[] datePrefix = new byte[20];
+    private long cachedSecond = Long.MIN_VALUE;
+
+    @Override
+    public void startFile(LogOutputBuffer out) {
+    }
+
+    @Override
+    public void commit() {
+    }
+
+    @Override
+    public void rollback() {
+    }
+
+    @Override
+    public void encode(long time, LogLevel level, String tag, Object context, String message, LogOutputBuffer out) {
+        encode(time, level, tag, LogMessages.resolveContext(context), message, out);
+    }
+
+    /**
+     * Appends line in format "\n dd.MM.yyyy HH:mm:ss.SSS:[tag]:L:\tcontext: message" to the output
+     *
+     * @param time    message time in milliseconds
+     * @param level   message level
+     * @param tag     message tag
+     * @param context message context or null
+     * @param message the message
+     * @param out     output buffer
+     */
+    void encode(long time, LogLevel level, String tag, String context, String message, LogOutputBuffer out) {
+        out.put((byte) '\n');
+        putTimestamp(time, out);
+        out.put((byte) ':');
+        out.put((byte) '[');
+        putString(tag, out);
+        out.put((byte) ']');
+        out.put((byte) ':');
+        out.put((byte) level.letter);
+        out.put((byte) ':');
+        out.put((byte) '\t');
+        if (context != null) {
+            putString(context, out);
+            out.put((byte) ':');
+            out.put((byte) ' ');
+        }
+        putString(message, out);
+    }
+
+    /**
+     * Appends timestamp in format "dd.MM.yyyy HH:mm:ss.SSS"
+     *
+     * @param time time in milliseconds
+     * @param out  output buffer
+     */
+    void putTimestamp(long time, LogOutputBuffer out) {
+        long second = time / 1000;
+        if (second != cachedSecond) {
+            updateDatePrefix(second * 1000);
+            cachedSecond = second;
+        }
+        for (byte b : datePrefix) {
+            out.put(b);
+        }
+        int millis = (int) (time - cachedSecond * 1000);
+        out.put((byte) ('0' + millis / 100));
+        out.put((byte) ('0' + millis / 10 % 10));
+        out.put((byte) ('0' + millis % 10));
+    }
+
+    /**
+     * Appends UTF-8 representation of given string
+     *
+     * @param value string to append, null is written as "null"
+     * @param out   output buffer
+     */
+    static void putString(String value, LogByteOutput out) {
+        if (value == null) {
+            value = NULL;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | (codePoint >> 18)));
+                out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?');
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Returns number of bytes in UTF-8 representation of given string, consistent with {@link #putString(String, LogByteOutput)}
+     *
+     * @param value string
+     * @return number of bytes
+     */
+    static int getUtf8Length(String value) {
+        int length = value.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Rebuilds cached "dd.MM.yyyy HH:mm:ss." prefix
+     *
+     * @param time time of the second start in milliseconds
+     */
+    private void updateDatePrefix(long time) {
+        calendar.setTimeInMillis(time);
+        putDigits(calendar.get(Calendar.DAY_OF_MONTH), 0, 2);
+        datePrefix[2] = '.';
+        putDigits(calendar.get(Calendar.MONTH) + 1, 3, 2);
+        datePrefix[5] = '.';
+        putDigits(calendar.get(Calendar.YEAR), 6, 4);
+        datePrefix[10] = ' ';
+        putDigits(calendar.get(Calendar.HOUR_OF_DAY), 11, 2);
+        datePrefix[13] = ':';
+        putDigits(calendar.get(Calendar.MINUTE), 14, 2);
+        datePrefix[16] = ':';
+        putDigits(calendar.get(Calendar.SECOND), 17, 2);
+        datePrefix[19] = '.';
+    }
+
+    private void putDigits(int value, int offset, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            datePrefix[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
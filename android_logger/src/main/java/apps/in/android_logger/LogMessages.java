@@ -0,0 +1,57 @@
+package apps.in.android_logger;
+
+import java.util.Locale;
+
+/**
+ * Resolves deferred message parts to strings.
+ */
+final class LogMessages {
+
+    private LogMessages() {
+    }
+
+    /**
+     * Returns the string representation of deferred context
+     *
+     * @param context context description, context object class or null
+     * @return context string or null if message has no context
+     */
+    static String resolveContext(Object context) {
+        if (context instanceof Class) {
+            return ((Class<?>) context).getSimpleName();
+        }
+        return context != null ? context.toString() : null;
+    }
+
+    /**
+     * Builds message from plain string, template with arguments or supplier
+     *
+     * @param message message string, template or {@link MessageSupplier}
+     * @param args    template arguments or null
+     * @return message string
+     */
+    static String resolveMessage(Object message, Object[] args) {
+        try {
+            if (message instanceof MessageSupplier) {
+                return ((MessageSupplier) message).get();
+            }
+            if (args != null) {
+                return String.format(Locale.US, String.valueOf(message), args);
+            }
+            return message instanceof String ? (String) message : String.valueOf(message);
+        } catch (Exception e) {
+            return String.format("%s (message formatting failed: %s)", message, e);
+        }
+    }
+
+    /**
+     * Joins context and message the same way they are written to file
+     *
+     * @param context context string or null
+     * @param message message string
+     * @return message prefixed with context
+     */
+    static String join(String context, String message) {
+        return context != null ? context + ": " + message : message;
+    }
+}
@@ -0,0 +1,86 @@
+package apps.in.android_logger;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Reusable byte buffer made of fixed-size direct chunks, written to file with a single gathering write.
+ * Not thread-safe.
+ */
+final class LogOutputBuffer implements LogByteOutput {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer[] flipped = new ByteBuffer[0];
+    private ByteBuffer current;
+    private int currentIndex = -1;
+
+    /**
+     * Appends single byte, moves to the next chunk when current one is full
+     *
+     * @param b byte to append
+     */
+    @Override
+    public void put(byte b) {
+        if (current == null || !current.hasRemaining()) {
+            nextChunk();
+        }
+        current.put(b);
+    }
+
+    /**
+     * Checks if nothing was written since last {@link #clear()}
+     *
+     * @return true if buffer is empty
+     */
+    boolean isEmpty() {
+        return current == null || (currentIndex == 0 && current.position() == 0);
+    }
+
+    /**
+     * Prepares written chunks for reading
+     *
+     * @return array of chunks, only first {@link #chunkCount()} items are valid
+     */
+    ByteBuffer[] flip() {
+        int count = chunkCount();
+        if (flipped.length < count) {
+            flipped = new ByteBuffer[chunks.size()];
+        }
+        for (int i = 0; i < count; i++) {
+            ByteBuffer chunk = chunks.get(i);
+            chunk.flip();
+            flipped[i] = chunk;
+        }
+        return flipped;
+    }
+
+    /**
+     * Returns number of chunks holding data
+     *
+     * @return number of used chunks
+     */
+    int chunkCount() {
+        return currentIndex + 1;
+    }
+
+    /**
+     * Resets buffer keeping allocated chunks for reuse
+     */
+    void clear() {
+        for (int i = 0; i <= currentIndex; i++) {
+            chunks.get(i).clear();
+        }
+        currentIndex = -1;
+        current = null;
+    }
+
+    private void nextChunk() {
+        currentIndex++;
+        if (currentIndex == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE));
+        }
+        current = chunks.get(currentIndex);
+    }
+}
@@ -18,15 +18,13 @@ public class LogPreferenceActivity extends PreferenceActivity {
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        InLogger.log(this, "Lifecycle: onCreate");
-        InLogger.log(this,"savedInstanceState", savedInstanceState);
+        InLogger.logLifecycle(this, "Lifecycle: onCreate", "savedInstanceState", savedInstanceState);
     }
 
     @Override
     protected void onPostCreate(@Nullable Bundle savedInstanceState) {
         super.onPostCreate(savedInstanceState);
-        InLogger.log(this, "Lifecycle: onPostCreate");
-        InLogger.log(this,"savedInstanceState", savedInstanceState);
+        InLogger.logLifecycle(this, "Lifecycle: onPostCreate", "savedInstanceState", savedInstanceState);
     }
 
     @Override
@@ -0,0 +1,266 @@
+package apps.in.android_logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limits and sampling of logged messages, global and per tag.
+ * Every tag has its own token buckets: one refilled with messages per second and one refilled
+ * with message characters per minute. Global limit is used for tags without own limit,
+ * so a single flooding tag exhausts only its own budget.
+ * <p>
+ * Message count is checked before the message is built. Message length is known only when the message
+ * is built, so it is charged later and a tag which went over its budget is suppressed until the budget is refilled.
+ * Limits are configured before logger is started and are not changed later.
+ */
+final class LogRateLimiter {
+
+    static final long DEFAULT_REPORT_INTERVAL_MILLIS = 60 * 1000;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MINUTE = 60 * NANOS_PER_SECOND;
+    private static final String NO_TAG = "(no tag)";
+
+    private final HashMap<String, Limit> tagLimits = new HashMap<>();
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong sampledOutCount = new AtomicLong();
+    private Limit globalLimit;
+
+    /**
+     * Budget of a tag, negative values of tag limit are taken from global limit.
+     */
+    private static final class Limit {
+        double messagesPerSecond = -1;
+        long charactersPerMinute = -1;
+        double sampleRate = -1;
+
+        /**
+         * Creates limit with unset values taken from other limit
+         *
+         * @param defaults global limit or null
+         * @return effective limit
+         */
+        Limit withDefaults(Limit defaults) {
+            Limit limit = new Limit();
+            limit.messagesPerSecond = messagesPerSecond >= 0 ? messagesPerSecond : defaults != null ? Math.max(0, defaults.messagesPerSecond) : 0;
+            limit.charactersPerMinute = charactersPerMinute >= 0 ? charactersPerMinute : defaults != null ? Math.max(0, defaults.charactersPerMinute) : 0;
+            limit.sampleRate = sampleRate >= 0 ? sampleRate : defaults != null && defaults.sampleRate >= 0 ? defaults.sampleRate : 1;
+            return limit;
+        }
+    }
+
+    /**
+     * Token buckets of a tag with counters of suppressed messages since the last report.
+     * Message buckets hold up to one second of messages, character buckets hold up to one minute of characters.
+     */
+    private static final class Bucket {
+        final Limit limit;
+        double messageTokens;
+        double characterTokens;
+        long refilledAt;
+        long rateLimited;
+        long sampledOut;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.messageTokens = Math.max(1, limit.messagesPerSecond);
+            this.characterTokens = limit.charactersPerMinute;
+            this.refilledAt = now;
+        }
+
+        /**
+         * Adds tokens for time passed since the last refill
+         *
+         * @param now current time in nanoseconds
+         */
+        void refill(long now) {
+            long elapsed = now - refilledAt;
+            if (elapsed <= 0) {
+                return;
+            }
+            refilledAt = now;
+            if (limit.messagesPerSecond > 0) {
+                messageTokens = Math.min(Math.max(1, limit.messagesPerSecond), messageTokens + elapsed * limit.messagesPerSecond / NANOS_PER_SECOND);
+            }
+            if (limit.charactersPerMinute > 0) {
+                characterTokens = Math.min(limit.charactersPerMinute, characterTokens + (double) elapsed * limit.charactersPerMinute / NANOS_PER_MINUTE);
+            }
+        }
+    }
+
+    /**
+     * Checks if any limit or sampling is configured
+     *
+     * @return true if messages may be suppressed
+     */
+    boolean isEnabled() {
+        return globalLimit != null || !tagLimits.isEmpty();
+    }
+
+    /**
+     * Sets rate limit of given tag or global limit
+     *
+     * @param tag                 message tag, null for tags without own limit
+     * @param messagesPerSecond   maximum average number of messages per second, 0 for no limit
+     * @param charactersPerMinute maximum average length of messages per minute in characters, 0 for no limit
+     */
+    void setLimit(String tag, double messagesPerSecond, long charactersPerMinute) {
+        Limit limit = getLimitForUpdate(tag);
+        limit.messagesPerSecond = Math.max(0, messagesPerSecond);
+        limit.charactersPerMinute = Math.max(0, charactersPerMinute);
+    }
+
+    /**
+     * Sets sampling rate of given tag or global sampling rate
+     *
+     * @param tag        message tag, null for tags without own sampling rate
+     * @param sampleRate part of messages to keep from 0 to 1
+     */
+    void setSampleRate(String tag, double sampleRate) {
+        getLimitForUpdate(tag).sampleRate = Math.max(0, Math.min(sampleRate, 1));
+    }
+
+    /**
+     * Returns limit for configuration
+     *
+     * @param tag message tag, null for global limit
+     * @return mutable limit
+     */
+    private Limit getLimitForUpdate(String tag) {
+        if (tag == null) {
+            if (globalLimit == null) {
+                globalLimit = new Limit();
+            }
+            return globalLimit;
+        }
+        Limit limit = tagLimits.get(tag);
+        if (limit == null) {
+            limit = new Limit();
+            tagLimits.put(tag, limit);
+        }
+        return limit;
+    }
+
+    /**
+     * Takes message from budget of the tag, message length is charged by {@link #charge(String, int)} when it is built
+     *
+     * @param tag message tag
+     * @return true if message should be logged
+     */
+    boolean tryAcquire(String tag) {
+        Bucket bucket = getBucket(tag);
+        if (bucket == null) {
+            return true;
+        }
+        Limit limit = bucket.limit;
+        if (limit.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= limit.sampleRate) {
+            synchronized (bucket) {
+                bucket.sampledOut++;
+            }
+            sampledOutCount.incrementAndGet();
+            return false;
+        }
+        long now = System.nanoTime();
+        synchronized (bucket) {
+            bucket.refill(now);
+            if ((limit.messagesPerSecond > 0 && bucket.messageTokens < 1) || (limit.charactersPerMinute > 0 && bucket.characterTokens <= 0)) {
+                bucket.rateLimited++;
+                rateLimitedCount.incrementAndGet();
+                return false;
+            }
+            bucket.messageTokens--;
+        }
+        return true;
+    }
+
+    /**
+     * Charges length of message built after it passed {@link #tryAcquire(String)}.
+     * Budget may go below zero, then next messages of the tag are suppressed until it is refilled.
+     *
+     * @param tag    message tag
+     * @param length message length in characters
+     */
+    void charge(String tag, int length) {
+        Bucket bucket = getBucket(tag);
+        if (bucket != null && bucket.limit.charactersPerMinute > 0) {
+            synchronized (bucket) {
+                bucket.characterTokens -= length;
+            }
+        }
+    }
+
+    /**
+     * Returns buckets of the tag, creates them on the first message of the tag
+     *
+     * @param tag message tag, messages without tag share the global limit
+     * @return buckets or null if tag is not limited
+     */
+    private Bucket getBucket(String tag) {
+        String key = tag != null ? tag : NO_TAG;
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            Limit limit = tag != null ? tagLimits.get(tag) : null;
+            if (limit == null && globalLimit == null) {
+                return null;
+            }
+            Bucket created = new Bucket((limit != null ? limit : new Limit()).withDefaults(globalLimit), System.nanoTime());
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns summary of messages suppressed since the previous call and resets counters
+     *
+     * @return summary line or null if nothing was suppressed
+     */
+    String drainSuppressed() {
+        List<String> tags = new ArrayList<>(buckets.keySet());
+        Collections.sort(tags);
+        StringBuilder builder = null;
+        for (String tag : tags) {
+            Bucket bucket = buckets.get(tag);
+            long rateLimited;
+            long sampledOut;
+            synchronized (bucket) {
+                rateLimited = bucket.rateLimited;
+                sampledOut = bucket.sampledOut;
+                bucket.rateLimited = 0;
+                bucket.sampledOut = 0;
+            }
+            if (rateLimited == 0 && sampledOut == 0) {
+                continue;
+            }
+            if (builder == null) {
+                builder = new StringBuilder("Suppressed messages:");
+            } else {
+                builder.append(',');
+            }
+            builder.append(String.format(Locale.US, " [%s] %d rate limited, %d sampled out", tag, rateLimited, sampledOut));
+        }
+        return builder != null ? builder.toString() : null;
+    }
+
+    /**
+     * @return number of messages suppressed by rate limits since logger start
+     */
+    long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    /**
+     * @return number of messages dropped by sampling since logger start
+     */
+    long getSampledOutCount() {
+        return sampledOutCount.get();
+    }
+}
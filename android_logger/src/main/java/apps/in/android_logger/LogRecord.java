@@ -0,0 +1,39 @@
+package apps.in.android_logger;
+
+/**
+ * Preallocated slot of {@link LogRingBuffer} holding single log message.
+ */
+final class LogRecord {
+
+    long time;
+    LogLevel level;
+    String tag;
+    Object context;
+    Object message;
+    Object[] args;
+    long tailPosition;
+
+    /**
+     * Fills record with message parts.
+     */
+    void set(long time, LogLevel level, String tag, Object context, Object message, Object[] args, long tailPosition) {
+        this.time = time;
+        this.level = level;
+        this.tag = tag;
+        this.context = context;
+        this.message = message;
+        this.args = args;
+        this.tailPosition = tailPosition;
+    }
+
+    /**
+     * Releases references held by record.
+     */
+    void clear() {
+        level = null;
+        tag = null;
+        context = null;
+        message = null;
+        args = null;
+    }
+}
@@ -0,0 +1,195 @@
+package apps.in.android_logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer/single-consumer ring buffer with preallocated slots.
+ * <p>
+ * Producers claim a slot with a single CAS, fill it in place and publish it.
+ * The only consumer drains published slots in claim order and releases them for reuse.
+ *
+ * @param <E> slot type
+ */
+final class LogRingBuffer<E> {
+
+    /**
+     * Creates slot objects when the buffer is allocated.
+     *
+     * @param <E> slot type
+     */
+    interface SlotFactory<E> {
+        E newSlot();
+    }
+
+    /**
+     * Receives published slots on the consumer side.
+     *
+     * @param <E> slot type
+     */
+    interface SlotHandler<E> {
+        void onSlot(E slot);
+    }
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * Allocates buffer and all its slots.
+     *
+     * @param capacity    minimal capacity, rounded up to the power of two
+     * @param slotFactory factory of slot objects
+     */
+    LogRingBuffer(int capacity, SlotFactory<E> slotFactory) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = slotFactory.newSlot();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Claims next free slot. Claimed slot must be filled and then published with {@link #publish(long)}.
+     *
+     * @return sequence of claimed slot or -1 if buffer is full
+     */
+    long claim() {
+        long position = tail.get();
+        while (true) {
+            long difference = sequences.get((int) position & mask) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Returns slot for claimed sequence.
+     *
+     * @param sequence claimed sequence
+     * @return slot object
+     */
+    @SuppressWarnings("unchecked")
+    E get(long sequence) {
+        return (E) slots[(int) sequence & mask];
+    }
+
+    /**
+     * Makes filled slot visible to consumer.
+     *
+     * @param sequence claimed sequence
+     */
+    void publish(long sequence) {
+        sequences.lazySet((int) sequence & mask, sequence + 1);
+    }
+
+    /**
+     * Passes published slots to handler in claim order and releases them.
+     * Must be called from the single consumer thread only.
+     *
+     * @param handler slot handler, should clear references held by slot
+     * @param limit   maximum number of slots to drain
+     * @return number of drained slots
+     */
+    int drain(SlotHandler<E> handler, int limit) {
+        long position = head;
+        int count = 0;
+        while (count < limit) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            handler.onSlot(get(position));
+            sequences.lazySet(index, position + slots.length);
+            position++;
+            count++;
+        }
+        if (count > 0) {
+            head = position;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the oldest published slot without releasing it.
+     * Must be called from the single consumer thread only.
+     *
+     * @return published slot or null if the oldest slot is not published yet
+     */
+    E peek() {
+        long position = head;
+        if (sequences.get((int) position & mask) != position + 1) {
+            return null;
+        }
+        return get(position);
+    }
+
+    /**
+     * Releases slot returned by {@link #peek()} for reuse.
+     * Must be called from the single consumer thread only.
+     */
+    void release() {
+        long position = head;
+        sequences.lazySet((int) position & mask, position + slots.length);
+        head = position + 1;
+    }
+
+    /**
+     * Returns approximate number of claimed and not yet drained slots.
+     *
+     * @return number of occupied slots
+     */
+    int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, slots.length));
+    }
+
+    /**
+     * Checks if buffer has no occupied slots.
+     *
+     * @return true if buffer is empty
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns buffer capacity.
+     *
+     * @return number of slots
+     */
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Returns number of slots claimed since buffer was created.
+     *
+     * @return number of successful claims
+     */
+    long getClaimedCount() {
+        return tail.get();
+    }
+
+    /**
+     * Returns number of slots drained or released since buffer was created.
+     *
+     * @return consumer position
+     */
+    long getReleasedCount() {
+        return head;
+    }
+}
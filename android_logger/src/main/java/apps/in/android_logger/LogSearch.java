@@ -0,0 +1,108 @@
+package apps.in.android_logger;
+
+/**
+ * Query for {@link InLogger#searchLogs(LogSearch)}. All set conditions must match.
+ */
+public final class LogSearch {
+
+    static final int DEFAULT_MAX_RESULTS = 1000;
+
+    private String tag;
+    private String text;
+    private LogLevel minLevel;
+    private long fromTime = Long.MIN_VALUE;
+    private long toTime = Long.MAX_VALUE;
+    private int maxResults = DEFAULT_MAX_RESULTS;
+    private long[] textTokens;
+
+    /**
+     * Setup tag of searched messages.
+     *
+     * @param tag exact message tag, null for any tag
+     * @return current search
+     */
+    public LogSearch setTag(String tag) {
+        this.tag = tag;
+        return this;
+    }
+
+    /**
+     * Setup words of searched messages. Message matches if it contains every word of the text,
+     * words are sequences of letters and digits compared ignoring case.
+     *
+     * @param text searched words, null for any message
+     * @return current search
+     */
+    public LogSearch setText(String text) {
+        this.text = text;
+        textTokens = null;
+        return this;
+    }
+
+    /**
+     * Setup minimum level of searched messages.
+     *
+     * @param minLevel minimum level, null for any level
+     * @return current search
+     */
+    public LogSearch setMinLevel(LogLevel minLevel) {
+        this.minLevel = minLevel;
+        return this;
+    }
+
+    /**
+     * Setup time range of searched messages.
+     *
+     * @param fromTime minimum message time in milliseconds, inclusive
+     * @param toTime   maximum message time in milliseconds, inclusive
+     * @return current search
+     */
+    public LogSearch setTimeRange(long fromTime, long toTime) {
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+        return this;
+    }
+
+    /**
+     * Setup maximum number of returned messages, the oldest messages are returned first.
+     *
+     * @param maxResults maximum number of messages, {@value #DEFAULT_MAX_RESULTS} by default
+     * @return current search
+     */
+    public LogSearch setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
+        return this;
+    }
+
+    String getTag() {
+        return tag;
+    }
+
+    LogLevel getMinLevel() {
+        return minLevel;
+    }
+
+    long getFromTime() {
+        return fromTime;
+    }
+
+    long getToTime() {
+        return toTime;
+    }
+
+    int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * Returns hashes of searched words
+     *
+     * @return word hashes, empty if text is not set
+     */
+    long[] getTextTokens() {
+        if (textTokens == null) {
+            textTokens = LogFileIndex.getTokens(text);
+        }
+        return textTokens;
+    }
+}
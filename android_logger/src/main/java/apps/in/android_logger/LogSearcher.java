@@ -0,0 +1,266 @@
+package apps.in.android_logger;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Searches messages in text log files. Log file is memory mapped and only ranges selected
+ * by {@link LogFileIndex} are parsed, files without index are scanned completely.
+ * Lines are parsed in the layout written by {@link LogLineEncoder}.
+ */
+final class LogSearcher {
+
+    private static final String TEXT_LOG_FILE_NAME_SUFFIX = ".log";
+    private static final int TIMESTAMP_LENGTH = 23;
+    private static final int MIN_HEADER_LENGTH = TIMESTAMP_LENGTH + 6;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    private final LogSearch search;
+    private final byte[] tagBytes;
+    private final long[] textTokens;
+    private final List<LogEntry> results = new ArrayList<>();
+    private final Calendar calendar = Calendar.getInstance();
+    private byte[] bytes = new byte[1024];
+
+    private LogSearcher(LogSearch search) {
+        this.search = search;
+        tagBytes = search.getTag() != null ? search.getTag().getBytes(UTF8) : null;
+        textTokens = search.getTextTokens();
+    }
+
+    /**
+     * Searches messages in log files, compressed and binary files are skipped
+     *
+     * @param logFiles log files from oldest to newest
+     * @param search   search conditions
+     * @return matching messages from oldest to newest
+     */
+    static List<LogEntry> search(List<File> logFiles, LogSearch search) {
+        LogSearcher searcher = new LogSearcher(search);
+        for (File logFile : logFiles) {
+            if (searcher.isFull()) {
+                break;
+            }
+            if (logFile.getName().endsWith(TEXT_LOG_FILE_NAME_SUFFIX)) {
+                searcher.searchFile(logFile);
+            }
+        }
+        return searcher.results;
+    }
+
+    private boolean isFull() {
+        return results.size() >= search.getMaxResults();
+    }
+
+    /**
+     * Parses ranges of log file which may contain matching messages
+     *
+     * @param logFile text log file
+     */
+    private void searchFile(File logFile) {
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "r")) {
+            FileChannel channel = file.getChannel();
+            long length = channel.size();
+            if (length == 0) {
+                return;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            for (long[] range : LogFileIndex.getRanges(logFile, length, search)) {
+                if (isFull()) {
+                    return;
+                }
+                searchRange(buffer, (int) range[0], (int) range[1]);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Splits range to messages, a message starts with a line beginning with timestamp
+     * and continues until the next such line
+     *
+     * @param buffer mapped log file
+     * @param start  range start
+     * @param end    range end
+     */
+    private void searchRange(MappedByteBuffer buffer, int start, int end) {
+        int recordStart = -1;
+        int lineStart = start;
+        while (lineStart < end && !isFull()) {
+            if (buffer.get(lineStart) == '\n') {
+                lineStart++;
+            }
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (isHeader(buffer, lineStart, lineEnd)) {
+                if (recordStart >= 0) {
+                    matchRecord(buffer, recordStart, lineStart - 1);
+                }
+                recordStart = lineStart;
+            }
+            lineStart = lineEnd;
+        }
+        if (recordStart >= 0 && !isFull()) {
+            matchRecord(buffer, recordStart, end);
+        }
+    }
+
+    /**
+     * Checks message against search conditions and adds it to results
+     *
+     * @param buffer mapped log file
+     * @param start  position of message timestamp
+     * @param end    end of message
+     */
+    private void matchRecord(MappedByteBuffer buffer, int start, int end) {
+        long time = parseTime(buffer, start);
+        if (time < search.getFromTime() || time > search.getToTime()) {
+            return;
+        }
+        int tagStart = start + TIMESTAMP_LENGTH + 2;
+        int tagEnd = findTagEnd(buffer, tagStart, end);
+        if (tagEnd < 0) {
+            return;
+        }
+        LogLevel level = getLevel(buffer.get(tagEnd + 2));
+        if (level == null || (search.getMinLevel() != null && level.ordinal() < search.getMinLevel().ordinal())) {
+            return;
+        }
+        if (tagBytes != null && !equals(buffer, tagStart, tagEnd, tagBytes)) {
+            return;
+        }
+        int messageStart = tagEnd + 5;
+        String message = decode(buffer, messageStart, Math.max(messageStart, end));
+        if (textTokens.length > 0 && !containsAll(LogFileIndex.getTokens(message), textTokens)) {
+            return;
+        }
+        results.add(new LogEntry(time, level, decode(buffer, tagStart, tagEnd), message));
+    }
+
+    /**
+     * Checks if line starts with "dd.MM.yyyy HH:mm:ss.SSS:["
+     */
+    private static boolean isHeader(MappedByteBuffer buffer, int start, int end) {
+        if (end - start < MIN_HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            byte b = buffer.get(start + i);
+            switch (i) {
+                case 2:
+                case 5:
+                case 19:
+                    if (b != '.') {
+                        return false;
+                    }
+                    break;
+                case 10:
+                    if (b != ' ') {
+                        return false;
+                    }
+                    break;
+                case 13:
+                case 16:
+                    if (b != ':') {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (b < '0' || b > '9') {
+                        return false;
+                    }
+            }
+        }
+        return buffer.get(start + TIMESTAMP_LENGTH) == ':' && buffer.get(start + TIMESTAMP_LENGTH + 1) == '[';
+    }
+
+    /**
+     * Finds end of tag followed by "]:L:\t"
+     *
+     * @return position of closing bracket or -1 if line is damaged
+     */
+    private static int findTagEnd(MappedByteBuffer buffer, int tagStart, int end) {
+        for (int i = tagStart; i + 4 < end; i++) {
+            if (buffer.get(i) == ']' && buffer.get(i + 1) == ':' && buffer.get(i + 3) == ':' && buffer.get(i + 4) == '\t') {
+                return i;
+            }
+            if (buffer.get(i) == '\n') {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private long parseTime(MappedByteBuffer buffer, int start) {
+        calendar.clear();
+        calendar.set(parseNumber(buffer, start + 6, 4), parseNumber(buffer, start + 3, 2) - 1, parseNumber(buffer, start, 2),
+                parseNumber(buffer, start + 11, 2), parseNumber(buffer, start + 14, 2), parseNumber(buffer, start + 17, 2));
+        return calendar.getTimeInMillis() + parseNumber(buffer, start + 20, 3);
+    }
+
+    private static int parseNumber(MappedByteBuffer buffer, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            value = value * 10 + buffer.get(i) - '0';
+        }
+        return value;
+    }
+
+    private static LogLevel getLevel(byte letter) {
+        for (LogLevel level : LEVELS) {
+            if (level.letter == letter) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    private static boolean equals(MappedByteBuffer buffer, int start, int end, byte[] value) {
+        if (end - start != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (buffer.get(start + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsAll(long[] tokens, long[] searched) {
+        for (long token : searched) {
+            boolean found = false;
+            for (long candidate : tokens) {
+                if (candidate == token) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(MappedByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, 0, length, UTF8);
+    }
+}
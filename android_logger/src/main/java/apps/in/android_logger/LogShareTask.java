@@ -0,0 +1,74 @@
+package apps.in.android_logger;
+
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Handle of log sharing preparation running in background.
+ */
+public final class LogShareTask {
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ShareLogCallback callback;
+    private volatile boolean cancelled;
+
+    /**
+     * @param callback receiver of progress and result, may be null
+     */
+    LogShareTask(ShareLogCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Cancels preparation. Callback is not called after cancellation,
+     * background work stops at the next log file or compressed block.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks if preparation was cancelled
+     *
+     * @return true if task was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Posts progress to the main thread
+     *
+     * @param done  number of prepared log files
+     * @param total number of log files to share
+     */
+    void postProgress(int done, int total) {
+        if (callback != null && !cancelled) {
+            handler.post(() -> {
+                if (!cancelled) {
+                    callback.onProgress(done, total);
+                }
+            });
+        }
+    }
+
+    /**
+     * Posts result to the main thread
+     *
+     * @param intent intent for logs sharing, null if preparation failed
+     */
+    void postResult(Intent intent) {
+        if (callback != null && !cancelled) {
+            handler.post(() -> {
+                if (!cancelled) {
+                    if (intent != null) {
+                        callback.onIntentReady(intent);
+                    } else {
+                        callback.onFailed();
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package apps.in.android_logger;
+
+import java.util.List;
+
+/**
+ * Destination of log messages registered with {@link InLogger.Initializer#addSink(LogSink)}.
+ * Every sink has its own bounded queue and thread, so a slow sink never delays logging or other sinks.
+ */
+public interface LogSink {
+
+    /**
+     * Called on the sink thread with messages in the order they were logged.
+     * Messages are formatted once and the same entries are passed to every sink.
+     *
+     * @param entries logged messages
+     */
+    void write(List<LogEntry> entries);
+}
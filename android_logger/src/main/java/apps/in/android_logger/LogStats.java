@@ -0,0 +1,225 @@
+package apps.in.android_logger;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of logger statistics. Counters are read one by one without locking,
+ * so values changing while snapshot is taken may be slightly inconsistent.
+ */
+public final class LogStats {
+
+    long enqueuedCount;
+    long writtenCount;
+    long droppedCount;
+    long spilledCount;
+    long discardedCount;
+    long overflowCount;
+    int queueDepth;
+    int queueCapacity;
+    long writtenBytes;
+    Histogram batchSizes = Histogram.EMPTY;
+    Histogram writeLatencyNanos = Histogram.EMPTY;
+    long sinkDroppedCount;
+    long rateLimitedCount;
+    long sampledOutCount;
+    long lastEmergencyDrainNanos = -1;
+    MainThreadLogStats mainThread;
+
+    LogStats() {
+    }
+
+    /**
+     * Snapshot of value distribution with power-of-two buckets.
+     */
+    public static final class Histogram {
+
+        static final Histogram EMPTY = new Histogram(new long[LogHistogram.BUCKET_COUNT], 0, 0, 0);
+
+        private final long[] buckets;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Histogram(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return number of recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return sum of recorded values
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return maximum recorded value
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return average recorded value, 0 if there are no values
+         */
+        public long getMean() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /**
+         * Returns upper bound of the bucket holding given percentile, the value is accurate within factor of two
+         *
+         * @param percentile percentile from 0 to 100
+         * @return approximate percentile value, 0 if there are no values
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            long target = (long) Math.ceil(total * Math.max(0, Math.min(percentile, 100)) / 100);
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= target && cumulative > 0) {
+                    return Math.min(max, (1L << i) - 1);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "count=%d mean=%d p50=%d p99=%d max=%d", count, getMean(), getPercentile(50), getPercentile(99), max);
+        }
+    }
+
+    /**
+     * @return number of messages accepted to file writer buffers
+     */
+    public long getEnqueuedCount() {
+        return enqueuedCount;
+    }
+
+    /**
+     * @return number of messages written to log file
+     */
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * @return number of messages lost because file writer buffer was full
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return number of messages written to overflow file
+     */
+    public long getSpilledCount() {
+        return spilledCount;
+    }
+
+    /**
+     * @return number of messages lost because log file could not be written
+     */
+    public long getDiscardedCount() {
+        return discardedCount;
+    }
+
+    /**
+     * @return number of messages which found file writer buffer full
+     */
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+
+    /**
+     * @return number of messages waiting for file writer
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return capacity of shared file writer buffer
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return number of bytes written to log files, compressed bytes for compressed files
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * @return distribution of number of messages written to file at once
+     */
+    public Histogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * @return distribution of time in nanoseconds spent writing one batch to file, including compression
+     */
+    public Histogram getWriteLatencyNanos() {
+        return writeLatencyNanos;
+    }
+
+    /**
+     * @return number of messages dropped by console, external logger and sinks because their queues were full
+     */
+    public long getSinkDroppedCount() {
+        return sinkDroppedCount;
+    }
+
+    /**
+     * @return number of messages suppressed by rate limits
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCount;
+    }
+
+    /**
+     * @return number of messages dropped by sampling
+     */
+    public long getSampledOutCount() {
+        return sampledOutCount;
+    }
+
+    /**
+     * @return duration in nanoseconds of the last log file drain by uncaught exception handler,
+     * including drains of previous runs, -1 if there was none
+     */
+    public long getLastEmergencyDrainNanos() {
+        return lastEmergencyDrainNanos;
+    }
+
+    /**
+     * @return time spent by logging calls made on the main thread
+     */
+    public MainThreadLogStats getMainThread() {
+        return mainThread;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "enqueued=%d written=%d dropped=%d spilled=%d discarded=%d queue=%d/%d bytes=%d batch[%s] writeNanos[%s] sinkDropped=%d rateLimited=%d sampledOut=%d mainThread[calls=%d avgNanos=%d maxNanos=%d]",
+                enqueuedCount, writtenCount, droppedCount, spilledCount, discardedCount, queueDepth, queueCapacity, writtenBytes, batchSizes, writeLatencyNanos, sinkDroppedCount, rateLimitedCount, sampledOutCount,
+                mainThread != null ? mainThread.getCalls() : 0, mainThread != null ? mainThread.getAverageNanos() : 0, mainThread != null ? mainThread.getMaxNanos() : 0);
+    }
+}
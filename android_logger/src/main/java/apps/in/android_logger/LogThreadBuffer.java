@@ -0,0 +1,124 @@
+package apps.in.android_logger;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer/single-consumer buffer of log records owned by one logging thread.
+ * <p>
+ * The owner fills slots and publishes them with a volatile store, without CAS or locks.
+ * Writer thread reads published records in order and releases them with an ordered store.
+ */
+final class LogThreadBuffer {
+
+    private final LogRecord[] slots;
+    private final int mask;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final WeakReference<Thread> owner;
+    private long producerPosition;
+    private long cachedReleased;
+    private long consumerPosition;
+    private long cachedPublished;
+
+    /**
+     * Allocates buffer and all its records.
+     *
+     * @param capacity minimal capacity, rounded up to the power of two
+     * @param owner    thread which will fill the buffer
+     */
+    LogThreadBuffer(int capacity, Thread owner) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new LogRecord[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new LogRecord();
+        }
+        mask = size - 1;
+        this.owner = new WeakReference<>(owner);
+    }
+
+    /**
+     * Returns next free record, called by owner thread only.
+     * Record must be filled and then published with {@link #publish()}.
+     *
+     * @return free record or null if buffer is full
+     */
+    LogRecord claim() {
+        if (producerPosition - cachedReleased >= slots.length) {
+            cachedReleased = released.get();
+            if (producerPosition - cachedReleased >= slots.length) {
+                return null;
+            }
+        }
+        return slots[(int) producerPosition & mask];
+    }
+
+    /**
+     * Makes claimed record visible to writer thread, called by owner thread only.
+     * The store is volatile, not ordered: the owner reads writer state right after publishing,
+     * while the writer publishes its idle state and then checks buffers, so both sides
+     * need a full fence to see each other and not miss the wake-up.
+     */
+    void publish() {
+        published.set(++producerPosition);
+    }
+
+    /**
+     * Returns the oldest published record without releasing it, called by writer thread only.
+     *
+     * @return published record or null if there is none
+     */
+    LogRecord peek() {
+        if (consumerPosition >= cachedPublished) {
+            cachedPublished = published.get();
+            if (consumerPosition >= cachedPublished) {
+                return null;
+            }
+        }
+        return slots[(int) consumerPosition & mask];
+    }
+
+    /**
+     * Releases record returned by {@link #peek()} for reuse, called by writer thread only.
+     */
+    void release() {
+        released.lazySet(++consumerPosition);
+    }
+
+    /**
+     * Returns approximate number of published and not released records.
+     *
+     * @return number of occupied records
+     */
+    int size() {
+        return (int) Math.max(0, published.get() - released.get());
+    }
+
+    /**
+     * Returns number of records published since buffer was created.
+     *
+     * @return number of published records
+     */
+    long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * Returns number of records released since buffer was created.
+     *
+     * @return consumer position
+     */
+    long getReleasedCount() {
+        return released.get();
+    }
+
+    /**
+     * Checks if owner thread finished, so buffer will never receive new records.
+     *
+     * @return true if owner thread is not alive
+     */
+    boolean isAbandoned() {
+        Thread thread = owner.get();
+        return thread == null || !thread.isAlive();
+    }
+}
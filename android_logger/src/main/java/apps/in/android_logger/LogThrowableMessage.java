@@ -0,0 +1,63 @@
+package apps.in.android_logger;
+
+/**
+ * Message with exception stack trace rendered when the message is written.
+ * Only the reference to exception is captured, stack traces of the exception and its causes
+ * are walked on the thread which writes the message.
+ * With trace cache repeated traces are written as the first line of exception with a reference to the first occurrence.
+ */
+final class LogThrowableMessage implements MessageSupplier {
+
+    private final String description;
+    private final Throwable throwable;
+    private final LogTraceCache traceCache;
+
+    /**
+     * @param description the description of exception
+     * @param throwable   the exception
+     * @param traceCache  cache of logged traces or null to always write full trace
+     */
+    LogThrowableMessage(String description, Throwable throwable, LogTraceCache traceCache) {
+        this.description = description;
+        this.throwable = throwable;
+        this.traceCache = traceCache;
+    }
+
+    @Override
+    public String get() {
+        if (traceCache == null || throwable == null) {
+            return description + ":\n" + render(throwable);
+        }
+        LogTraceCache.Occurrence occurrence = traceCache.record(throwable);
+        if (occurrence.isFirst()) {
+            return description + ":\n[trace #" + occurrence.id + "] " + render(throwable);
+        }
+        return description + ":\n" + throwable.getClass().getSimpleName() + ": " + throwable.getMessage() +
+                " [trace #" + occurrence.id + ", seen " + occurrence.count + " times]";
+    }
+
+    /**
+     * Returns the string representation of exception with stack traces of all causes
+     *
+     * @param e exception
+     * @return string representation of exception, empty string for null
+     */
+    static String render(Throwable e) {
+        if (e == null) {
+            return "";
+        }
+        Throwable throwable = e;
+        StringBuilder stringBuilder = new StringBuilder();
+        do {
+            stringBuilder.append(throwable.getClass().getSimpleName()).append(": ").append(throwable.getMessage());
+            for (StackTraceElement element : throwable.getStackTrace()) {
+                stringBuilder.append("\n\t").append(element);
+            }
+            throwable = throwable.getCause();
+            if (throwable != null) {
+                stringBuilder.append("\nCaused by: ");
+            }
+        } while (throwable != null);
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package apps.in.android_logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fingerprints of logged exception stack traces.
+ * The first occurrence of a trace gets an id and is written in full, later occurrences
+ * of the same trace are written as a reference to the id. Repeats are counted until they are reported.
+ * Least recently seen traces are evicted when cache is full, evicted trace is written in full again.
+ */
+final class LogTraceCache {
+
+    static final int DEFAULT_MAX_TRACES = 256;
+    static final long DEFAULT_REPORT_INTERVAL_MILLIS = 60 * 1000;
+
+    private final Map<Long, Trace> traces;
+    private int nextId = 1;
+
+    /**
+     * Cached trace with its repeat counters.
+     */
+    private static final class Trace {
+        final int id;
+        long count = 1;
+        long unreportedRepeats;
+
+        Trace(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Occurrence of logged trace.
+     */
+    static final class Occurrence {
+        final int id;
+        final long count;
+
+        Occurrence(int id, long count) {
+            this.id = id;
+            this.count = count;
+        }
+
+        /**
+         * @return true if trace is logged for the first time and should be written in full
+         */
+        boolean isFirst() {
+            return count == 1;
+        }
+    }
+
+    /**
+     * @param maxTraces maximum number of cached traces
+     */
+    LogTraceCache(final int maxTraces) {
+        traces = new LinkedHashMap<Long, Trace>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Trace> eldest) {
+                return size() > maxTraces;
+            }
+        };
+    }
+
+    /**
+     * Registers occurrence of exception trace
+     *
+     * @param throwable logged exception
+     * @return occurrence with trace id and number of occurrences including this one
+     */
+    Occurrence record(Throwable throwable) {
+        long fingerprint = getFingerprint(throwable);
+        synchronized (this) {
+            Trace trace = traces.get(fingerprint);
+            if (trace == null) {
+                trace = new Trace(nextId++);
+                traces.put(fingerprint, trace);
+            } else {
+                trace.count++;
+                trace.unreportedRepeats++;
+            }
+            return new Occurrence(trace.id, trace.count);
+        }
+    }
+
+    /**
+     * Returns repeats counted since previous report and resets the counters
+     *
+     * @return report of repeated traces or null if no trace was repeated
+     */
+    synchronized String drainRepeats() {
+        StringBuilder stringBuilder = null;
+        for (Trace trace : traces.values()) {
+            if (trace.unreportedRepeats > 0) {
+                if (stringBuilder == null) {
+                    stringBuilder = new StringBuilder("Repeated exceptions:");
+                } else {
+                    stringBuilder.append(',');
+                }
+                stringBuilder.append(" trace #").append(trace.id).append(" x ").append(trace.unreportedRepeats);
+                trace.unreportedRepeats = 0;
+            }
+        }
+        return stringBuilder != null ? stringBuilder.toString() : null;
+    }
+
+    /**
+     * Forgets all traces, so they are written in full again. Called when log file is rotated,
+     * so references never point to a trace in another file.
+     *
+     * @return report of repeats not reported yet or null if there are none
+     */
+    synchronized String reset() {
+        String repeats = drainRepeats();
+        traces.clear();
+        return repeats;
+    }
+
+    /**
+     * Computes hash of exception classes and stack frames of the exception and its causes.
+     * Exception messages are not included, so traces differing only by message are the same.
+     *
+     * @param throwable exception
+     * @return trace fingerprint
+     */
+    private static long getFingerprint(Throwable throwable) {
+        long hash = 0xcbf29ce484222325L;
+        for (Throwable current = throwable; current != null; current = current.getCause()) {
+            hash = mix(hash, current.getClass().getName().hashCode());
+            for (StackTraceElement element : current.getStackTrace()) {
+                hash = mix(hash, element.getClassName().hashCode());
+                hash = mix(hash, element.getMethodName().hashCode());
+                hash = mix(hash, element.getLineNumber());
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+}
@@ -0,0 +1,14 @@
+package apps.in.android_logger;
+
+/**
+ * Receives zip-archive with log files prepared in background.
+ */
+public interface LogZipCallback {
+
+    /**
+     * Called on the main thread when zip-archive is ready.
+     *
+     * @param path path to zip-archive with log files, null if archive cannot be created
+     */
+    void onLogZip(String path);
+}
@@ -0,0 +1,18 @@
+package apps.in.android_logger;
+
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * Sink writing messages to console.
+ */
+final class LogcatSink implements LogSink {
+
+    @Override
+    public void write(List<LogEntry> entries) {
+        for (LogEntry entry : entries) {
+            Log.println(entry.getLevel().priority, entry.getTag(), entry.getMessage());
+        }
+    }
+}
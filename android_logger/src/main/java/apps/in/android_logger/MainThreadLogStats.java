@@ -0,0 +1,73 @@
+package apps.in.android_logger;
+
+/**
+ * Snapshot of time spent by logging calls made on the main thread.
+ */
+public final class MainThreadLogStats {
+
+    private final long calls;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long offloaded;
+    private final long dropped;
+
+    MainThreadLogStats(long calls, long totalNanos, long maxNanos, long offloaded, long dropped) {
+        this.calls = calls;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.offloaded = offloaded;
+        this.dropped = dropped;
+    }
+
+    /**
+     * @return number of logging calls made on the main thread
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return total time in nanoseconds spent by logging calls on the main thread
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return longest logging call on the main thread in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return average logging call time on the main thread in nanoseconds, 0 if there were no calls
+     */
+    public long getAverageNanos() {
+        return calls > 0 ? totalNanos / calls : 0;
+    }
+
+    /**
+     * @return number of messages rendered off the main thread in main-thread offload mode
+     */
+    public long getOffloaded() {
+        return offloaded;
+    }
+
+    /**
+     * @return number of messages dropped because offload queue was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return "MainThreadLogStats{calls=" + calls +
+                ", totalNanos=" + totalNanos +
+                ", maxNanos=" + maxNanos +
+                ", averageNanos=" + getAverageNanos() +
+                ", offloaded=" + offloaded +
+                ", dropped=" + dropped + '}';
+    }
+}
@@ -0,0 +1,14 @@
+package apps.in.android_logger;
+
+/**
+ * Supplies log message which is built only when it is going to be written.
+ */
+public interface MessageSupplier {
+
+    /**
+     * Builds the message.
+     *
+     * @return log message
+     */
+    String get();
+}
@@ -0,0 +1,27 @@
+package apps.in.android_logger;
+
+/**
+ * Defines what happens with a message when log file buffer is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The new message is discarded.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest buffered message is discarded to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The logging thread waits for free space up to the configured timeout, then discards the new message.
+     */
+    BLOCK,
+
+    /**
+     * The new message is written synchronously to the secondary overflow file.
+     */
+    SPILL
+}
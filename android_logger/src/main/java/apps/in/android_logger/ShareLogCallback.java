@@ -0,0 +1,29 @@
+package apps.in.android_logger;
+
+import android.content.Intent;
+
+/**
+ * Receives progress and result of log sharing preparation, all methods are called on the main thread.
+ */
+public interface ShareLogCallback {
+
+    /**
+     * Called when next log file is prepared.
+     *
+     * @param done  number of prepared log files
+     * @param total number of log files to share
+     */
+    void onProgress(int done, int total);
+
+    /**
+     * Called when intent for logs sharing is ready.
+     *
+     * @param intent intent for logs sharing
+     */
+    void onIntentReady(Intent intent);
+
+    /**
+     * Called when there are no logs to share or preparation failed.
+     */
+    void onFailed();
+}
@@ -0,0 +1,111 @@
+package apps.in.android_logger;
+
+import org.junit.Test;
+
+import apps.in.log_decoder.BinaryLogDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Binary log files decoded by BinaryLogDecoder match text log files.
+ */
+public class BinaryLogEncoderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final long TIME = 1700000000000L;
+
+    private final BinaryLogEncoder encoder = new BinaryLogEncoder();
+    private final LogLineEncoder lineEncoder = new LogLineEncoder();
+    private final LogOutputBuffer output = new LogOutputBuffer();
+    private final LogOutputBuffer expected = new LogOutputBuffer();
+
+    private void encode(long time, LogLevel level, String tag, String context, String message) {
+        encoder.encode(time, level, tag, context, message, output);
+        lineEncoder.encode(time, level, tag, context, message, expected);
+    }
+
+    private static String decode(byte[] bytes) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        new BinaryLogDecoder(null).decode(new ByteArrayInputStream(bytes), text);
+        return new String(text.toByteArray(), UTF8);
+    }
+
+    private String getExpected() {
+        return new String(LogLineEncoderTest.toBytes(expected), UTF8);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        encoder.startFile(output);
+        LogLevel[] levels = LogLevel.values();
+        long time = TIME;
+        for (int i = 0; i < 1000; i++) {
+            time += i % 7 == 0 ? -1500 : i * 13;
+            encode(time, levels[i % levels.length], "Tag" + i % 5, i % 3 == 0 ? null : "Context" + i % 4, "message " + i + " é \uD83D\uDE00");
+        }
+        encode(TIME, LogLevel.INFO, null, null, null);
+        assertEquals(getExpected(), decode(LogLineEncoderTest.toBytes(output)));
+    }
+
+    @Test
+    public void truncatedLastRecordIsSkipped() throws IOException {
+        encoder.startFile(output);
+        encode(TIME, LogLevel.INFO, "Tag", null, "first");
+        encode(TIME + 1, LogLevel.WARN, "Tag", "Context", "second");
+        String complete = getExpected();
+        encoder.encode(TIME + 2, LogLevel.ERROR, "Other", null, "third message", output);
+        byte[] bytes = LogLineEncoderTest.toBytes(output);
+        for (int cut = 1; cut < 20; cut++) {
+            assertEquals(complete, decode(Arrays.copyOf(bytes, bytes.length - cut)));
+        }
+    }
+
+    @Test
+    public void dictionaryOverflow() throws IOException {
+        encoder.startFile(output);
+        for (int i = 0; i < 10000; i++) {
+            encode(TIME + i, LogLevel.DEBUG, "Tag" + i, "Context" + i % 5000, "m" + i);
+        }
+        assertEquals(getExpected(), decode(LogLineEncoderTest.toBytes(output)));
+    }
+
+    @Test
+    public void rollbackForgetsLostRecords() throws IOException {
+        encoder.startFile(output);
+        encode(TIME, LogLevel.INFO, "Tag", "Context", "written");
+        encoder.commit();
+        byte[] written = LogLineEncoderTest.toBytes(output);
+        encoder.encode(TIME + 5000, LogLevel.INFO, "Lost", "LostContext", "lost", output);
+        encoder.encode(TIME + 6000, LogLevel.INFO, "Tag", "Context", "lost", output);
+        output.clear();
+        encoder.rollback();
+        encode(TIME + 100, LogLevel.INFO, "Lost", "LostContext", "after");
+        encode(TIME + 200, LogLevel.INFO, "Tag", "Context", "after");
+        byte[] next = LogLineEncoderTest.toBytes(output);
+        byte[] file = Arrays.copyOf(written, written.length + next.length);
+        System.arraycopy(next, 0, file, written.length, next.length);
+        assertEquals(getExpected(), decode(file));
+    }
+
+    @Test
+    public void startFileResetsState() throws IOException {
+        encoder.startFile(output);
+        encode(TIME, LogLevel.INFO, "Tag", "Context", "first file");
+        output.clear();
+        expected.clear();
+        encoder.startFile(output);
+        encode(TIME + 1000, LogLevel.INFO, "Tag", "Context", "second file");
+        assertEquals(getExpected(), decode(LogLineEncoderTest.toBytes(output)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTextFile() throws IOException {
+        decode("\n01.01.2024 00:00:00.000:[Tag]:I:\tmessage".getBytes(UTF8));
+    }
+}
@@ -0,0 +1,62 @@
+package apps.in.android_logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Total size of log files is kept within the budget by deleting the oldest finished files.
+ */
+public class InLoggerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<File> createLogFiles(int count, int size) throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            File file = folder.newFile(i + ".log");
+            Files.write(file.toPath(), new byte[size]);
+            files.add(file);
+        }
+        return files;
+    }
+
+    @Test
+    public void oldestFilesAreDeletedUntilTotalSizeFits() throws Exception {
+        List<File> files = createLogFiles(5, 1000);
+        List<File> deleted = InLogger.deleteOldestLogFiles(files, Collections.singletonList(files.get(4)), 2500);
+        assertEquals(files.subList(0, 3), deleted);
+        assertFalse(files.get(2).exists());
+        assertTrue(files.get(3).exists());
+        assertTrue(files.get(4).exists());
+    }
+
+    @Test
+    public void nothingIsDeletedWithinBudget() throws Exception {
+        List<File> files = createLogFiles(3, 1000);
+        assertTrue(InLogger.deleteOldestLogFiles(files, Collections.<File>emptyList(), 3000).isEmpty());
+        for (File file : files) {
+            assertTrue(file.exists());
+        }
+    }
+
+    @Test
+    public void activeFilesAreNeverDeleted() throws Exception {
+        List<File> files = createLogFiles(4, 1000);
+        List<File> activeFiles = Arrays.asList(files.get(0), files.get(3));
+        List<File> deleted = InLogger.deleteOldestLogFiles(files, activeFiles, 0);
+        assertEquals(files.subList(1, 3), deleted);
+        assertTrue(files.get(0).exists());
+        assertTrue(files.get(3).exists());
+    }
+}
@@ -0,0 +1,176 @@
+package apps.in.android_logger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Log archive is built from cached compressed entries and readable by regular zip tools.
+ */
+public class LogArchiveTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDirectory;
+    private LogArchive archive;
+
+    @Before
+    public void setUp() {
+        cacheDirectory = new File(folder.getRoot(), "cache");
+        archive = new LogArchive(cacheDirectory);
+    }
+
+    private File createLogFile(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content.getBytes(UTF8));
+        return file;
+    }
+
+    private static void append(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(UTF8), StandardOpenOption.APPEND);
+    }
+
+    private static String createContent(String line, int count) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            stringBuilder.append(line).append(' ').append(i).append('\n');
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Reads archive entries with zip file of the platform
+     *
+     * @return names and contents of entries in archive order
+     */
+    private static List<String> readZip(File zipFile) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                try (InputStream input = zip.getInputStream(entry)) {
+                    byte[] buffer = new byte[4096];
+                    int count;
+                    while ((count = input.read(buffer)) > 0) {
+                        output.write(buffer, 0, count);
+                    }
+                }
+                result.add(entry.getName());
+                result.add(new String(output.toByteArray(), UTF8));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void archiveContainsLogFiles() throws Exception {
+        String firstContent = createContent("first é 😀", 1000);
+        String secondContent = createContent("second", 10);
+        File first = createLogFile("first.log", firstContent);
+        File second = createLogFile("second.log", secondContent);
+        File zipFile = new File(folder.getRoot(), "logs.zip");
+        archive.build(zipFile, Arrays.asList(first, second), Collections.singletonList(second), null);
+        assertEquals(Arrays.asList("first.log", firstContent, "second.log", secondContent), readZip(zipFile));
+        assertTrue(zipFile.length() < firstContent.length());
+    }
+
+    @Test
+    public void cachedEntryIsReused() throws Exception {
+        File logFile = createLogFile("first.log", createContent("first", 100));
+        archive.cache(logFile);
+        File entry = new File(cacheDirectory, "first.log.deflate");
+        assertTrue(entry.exists());
+        assertTrue(entry.setLastModified(0));
+        File zipFile = new File(folder.getRoot(), "logs.zip");
+        archive.build(zipFile, Collections.singletonList(logFile), Collections.<File>emptyList(), null);
+        assertEquals(0, entry.lastModified());
+        assertEquals(Arrays.asList("first.log", createContent("first", 100)), readZip(zipFile));
+    }
+
+    @Test
+    public void changedFilesAreCompressedAgain() throws Exception {
+        File finished = createLogFile("finished.log", createContent("finished", 100));
+        File active = createLogFile("active.log", createContent("active", 100));
+        archive.cache(finished);
+        File zipFile = new File(folder.getRoot(), "logs.zip");
+        List<File> logFiles = Arrays.asList(finished, active);
+        archive.build(zipFile, logFiles, Collections.singletonList(active), null);
+        append(finished, "changed\n");
+        append(active, "appended\n");
+        archive.build(zipFile, logFiles, Collections.singletonList(active), null);
+        assertEquals(Arrays.asList("finished.log", createContent("finished", 100) + "changed\n",
+                "active.log", createContent("active", 100) + "appended\n"), readZip(zipFile));
+    }
+
+    @Test
+    public void entriesOfMissingFilesAreDeleted() throws Exception {
+        File first = createLogFile("first.log", "first\n");
+        File second = createLogFile("second.log", "second\n");
+        File third = createLogFile("third.log", "third\n");
+        archive.cache(first);
+        archive.cache(second);
+        archive.cache(third);
+        archive.remove(first);
+        assertFalse(new File(cacheDirectory, "first.log.deflate").exists());
+        archive.build(new File(folder.getRoot(), "logs.zip"), Collections.singletonList(third), Collections.<File>emptyList(), null);
+        assertEquals(Collections.singletonList("third.log.deflate"), Arrays.asList(cacheDirectory.list()));
+    }
+
+    @Test
+    public void progressIsReportedPerFile() throws Exception {
+        List<File> logFiles = Arrays.asList(createLogFile("first.log", "first\n"), createLogFile("second.log", "second\n"));
+        final List<String> progress = new ArrayList<>();
+        archive.build(new File(folder.getRoot(), "logs.zip"), logFiles, Collections.<File>emptyList(), new LogArchive.Progress() {
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+
+            @Override
+            public void onProgress(int done, int total) {
+                progress.add(done + "/" + total);
+            }
+        });
+        assertEquals(Arrays.asList("1/2", "2/2"), progress);
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelledBuildStops() throws Exception {
+        File logFile = createLogFile("first.log", createContent("first", 100));
+        archive.build(new File(folder.getRoot(), "logs.zip"), Collections.singletonList(logFile), Collections.<File>emptyList(), new LogArchive.Progress() {
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+
+            @Override
+            public void onProgress(int done, int total) {
+                fail();
+            }
+        });
+    }
+}
@@ -0,0 +1,176 @@
+package apps.in.android_logger;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Crash tail recovers messages which were not marked as written to log file.
+ */
+public class LogCrashTailTest {
+
+    private static final long TIME = 1700000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> getMessages(List<LogCrashTail.Entry> entries) {
+        List<String> messages = new ArrayList<>();
+        for (LogCrashTail.Entry entry : entries) {
+            messages.add(entry.message);
+        }
+        return messages;
+    }
+
+    @Test
+    public void recoversAppendedMessages() throws Exception {
+        File file = folder.newFile("crash.tail");
+        LogCrashTail tail = LogCrashTail.open(file, 4096);
+        tail.append(TIME, LogLevel.WARN, "Tag", "first é 😀");
+        tail.append(TIME + 1, LogLevel.ERROR, null, "second");
+        List<LogCrashTail.Entry> entries = LogCrashTail.recover(file);
+        assertEquals(2, entries.size());
+        LogCrashTail.Entry entry = entries.get(0);
+        assertEquals(TIME, entry.time);
+        assertEquals(LogLevel.WARN, entry.level);
+        assertEquals("Tag", entry.tag);
+        assertEquals("first é 😀", entry.message);
+        assertEquals("null", entries.get(1).tag);
+        assertEquals("second", entries.get(1).message);
+    }
+
+    @Test
+    public void writtenMessagesAreNotRecovered() throws Exception {
+        File file = folder.newFile("crash.tail");
+        LogCrashTail tail = LogCrashTail.open(file, 4096);
+        long first = tail.append(TIME, LogLevel.INFO, "Tag", "first");
+        long second = tail.append(TIME, LogLevel.INFO, "Tag", "second");
+        tail.append(TIME, LogLevel.INFO, "Tag", "third");
+        tail.setWritten(first);
+        tail.setWritten(second);
+        assertEquals(Collections.singletonList("third"), getMessages(LogCrashTail.recover(file)));
+    }
+
+    @Test
+    public void flushedPositionStopsAtUnwrittenMessage() throws Exception {
+        File file = folder.newFile("crash.tail");
+        LogCrashTail tail = LogCrashTail.open(file, 4096);
+        long first = tail.append(TIME, LogLevel.INFO, "Tag", "first");
+        long second = tail.append(TIME, LogLevel.INFO, "Tag", "second");
+        long third = tail.append(TIME, LogLevel.INFO, "Tag", "third");
+        tail.setWritten(second);
+        tail.setWritten(third);
+        assertEquals(Arrays.asList("first", "second", "third"), getMessages(LogCrashTail.recover(file)));
+        tail.setWritten(first);
+        assertTrue(LogCrashTail.recover(file).isEmpty());
+    }
+
+    @Test
+    public void wrappedMessagesAreSkipped() throws Exception {
+        File file = folder.newFile("crash.tail");
+        LogCrashTail tail = LogCrashTail.open(file, 256);
+        for (int i = 0; i < 100; i++) {
+            tail.append(TIME + i, LogLevel.DEBUG, "Tag", "message " + i);
+        }
+        List<String> messages = getMessages(LogCrashTail.recover(file));
+        assertFalse(messages.isEmpty());
+        assertEquals("message 99", messages.get(messages.size() - 1));
+        for (int i = 0; i < messages.size(); i++) {
+            assertEquals("message " + (100 - messages.size() + i), messages.get(i));
+        }
+    }
+
+    @Test
+    public void gapIsSkippedAfterTooManyWrittenMessages() throws Exception {
+        File file = folder.newFile("crash.tail");
+        LogCrashTail tail = LogCrashTail.open(file, 1 << 20);
+        tail.append(TIME, LogLevel.INFO, "Tag", "never written");
+        List<Long> positions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            positions.add(tail.append(TIME + i, LogLevel.DEBUG, "Tag", "message " + i));
+        }
+        for (long position : positions) {
+            tail.setWritten(position);
+        }
+        assertTrue(LogCrashTail.recover(file).isEmpty());
+    }
+
+    @Test
+    public void tooLongMessageIsNotCopied() throws Exception {
+        File file = folder.newFile("crash.tail");
+        LogCrashTail tail = LogCrashTail.open(file, 64);
+        assertEquals(-1, tail.append(TIME, LogLevel.INFO, "Tag", "message longer than crash tail capacity of sixty four bytes"));
+        assertTrue(LogCrashTail.recover(file).isEmpty());
+    }
+
+    @Test
+    public void openResetsPreviousContent() throws Exception {
+        File file = folder.newFile("crash.tail");
+        LogCrashTail.open(file, 4096).append(TIME, LogLevel.INFO, "Tag", "previous run");
+        LogCrashTail.open(file, 4096);
+        assertTrue(LogCrashTail.recover(file).isEmpty());
+    }
+
+    @Test
+    public void missingOrDamagedFile() throws Exception {
+        assertTrue(LogCrashTail.recover(new File(folder.getRoot(), "missing.tail")).isEmpty());
+        File file = folder.newFile("damaged.tail");
+        Files.write(file.toPath(), new byte[100]);
+        assertTrue(LogCrashTail.recover(file).isEmpty());
+    }
+
+    @Test
+    public void writerMarksWrittenMessages() throws Exception {
+        File file = folder.newFile("crash.tail");
+        LogFileWriter writer = new LogFileWriter(folder.newFile("test.log"));
+        writer.setCrashTail(LogCrashTail.open(file, 1 << 16));
+        for (int i = 0; i < 500; i++) {
+            writer.logToFile(TIME + i, LogLevel.INFO, "Tag", "Context", "message %d", new Object[]{i});
+        }
+        writer.flush();
+        assertTrue(LogCrashTail.recover(file).isEmpty());
+    }
+
+    @Test
+    public void writerKeepsBufferedMessages() throws Exception {
+        File file = folder.newFile("crash.tail");
+        File directory = new File(folder.getRoot(), "missing");
+        LogFileWriter writer = new LogFileWriter(new File(directory, "test.log"));
+        writer.setCrashTail(LogCrashTail.open(file, 1 << 16));
+        for (int i = 0; i < 10; i++) {
+            writer.logToFile(TIME + i, LogLevel.INFO, "Tag", "Context", "message %d", new Object[]{i});
+        }
+        List<String> messages = getMessages(LogCrashTail.recover(file));
+        assertEquals(10, messages.size());
+        assertEquals("Context: message 0", messages.get(0));
+        assertTrue(directory.mkdir());
+        writer.flush();
+        assertTrue(LogCrashTail.recover(file).isEmpty());
+    }
+
+    @Test
+    public void writerKeepsDiscardedMessages() throws Exception {
+        File fullDevice = new File("/dev/full");
+        Assume.assumeTrue(fullDevice.canWrite());
+        File file = folder.newFile("crash.tail");
+        LogFileWriter writer = new LogFileWriter(fullDevice);
+        writer.setCrashTail(LogCrashTail.open(file, 1 << 16));
+        for (int i = 0; i < 10; i++) {
+            writer.logToFile(TIME + i, LogLevel.INFO, "Tag", null, "message %d", new Object[]{i});
+        }
+        writer.flush();
+        List<String> messages = getMessages(LogCrashTail.recover(file));
+        assertEquals(10, messages.size());
+        assertEquals("message 9", messages.get(9));
+    }
+}
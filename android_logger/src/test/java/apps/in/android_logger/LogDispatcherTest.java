@@ -0,0 +1,143 @@
+package apps.in.android_logger;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Dispatcher delivers queued entries in order and in bounded batches.
+ */
+public class LogDispatcherTest {
+
+    private static final long TIME = 1700000000000L;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Handler collecting delivered entries, optionally blocking on the first batch
+     */
+    private static class CollectingHandler implements LogDispatcher.BatchHandler {
+        final List<LogEntry> entries = Collections.synchronizedList(new ArrayList<LogEntry>());
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release;
+        final AtomicInteger active = new AtomicInteger();
+        volatile boolean concurrent;
+
+        CollectingHandler(boolean blockFirstBatch) {
+            release = new CountDownLatch(blockFirstBatch ? 1 : 0);
+        }
+
+        @Override
+        public void onBatch(List<LogEntry> batch) {
+            if (active.incrementAndGet() > 1) {
+                concurrent = true;
+            }
+            try {
+                entered.countDown();
+                release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                batchSizes.add(batch.size());
+                entries.addAll(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        void awaitEntries(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (entries.size() < count) {
+                assertTrue("entries are not delivered in time", System.currentTimeMillis() < deadline);
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    private static LogEntry createEntry(int i) {
+        return new LogEntry(TIME + i, LogLevel.INFO, "Tag", "message " + i);
+    }
+
+    private static void assertEntries(List<LogEntry> entries, int count) {
+        assertEquals(count, entries.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("message " + i, entries.get(i).getMessage());
+        }
+    }
+
+    @Test
+    public void deliversEntriesInOrderAndInBatches() throws Exception {
+        CollectingHandler handler = new CollectingHandler(false);
+        LogDispatcher dispatcher = new LogDispatcher("Dispatcher", 1000, 16, handler);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(dispatcher.offer(createEntry(i)));
+        }
+        handler.awaitEntries(1000);
+        assertEntries(handler.entries, 1000);
+        for (int size : handler.batchSizes) {
+            assertTrue(size <= 16);
+        }
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void reportsDroppedEntriesInNextBatch() throws Exception {
+        CollectingHandler handler = new CollectingHandler(true);
+        LogDispatcher dispatcher = new LogDispatcher("Dispatcher", 4, 16, handler);
+        assertTrue(dispatcher.offer(createEntry(0)));
+        assertTrue(handler.entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i < 5; i++) {
+            assertTrue(dispatcher.offer(createEntry(i)));
+        }
+        assertFalse(dispatcher.offer(createEntry(5)));
+        assertFalse(dispatcher.offer(createEntry(6)));
+        assertEquals(2, dispatcher.getDroppedCount());
+        handler.release.countDown();
+        handler.awaitEntries(6);
+        assertEntries(handler.entries.subList(0, 5), 5);
+        LogEntry report = handler.entries.get(5);
+        assertEquals(LogLevel.WARN, report.getLevel());
+        assertEquals("2 messages dropped (dispatcher queue overflow)", report.getMessage());
+    }
+
+    @Test
+    public void drainWaitsForHandlerWithinTimeout() throws Exception {
+        CollectingHandler handler = new CollectingHandler(true);
+        LogDispatcher dispatcher = new LogDispatcher("Dispatcher", 100, 4, handler);
+        assertTrue(dispatcher.offer(createEntry(0)));
+        assertTrue(handler.entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i < 50; i++) {
+            assertTrue(dispatcher.offer(createEntry(i)));
+        }
+        long start = System.nanoTime();
+        assertEquals(0, dispatcher.drain(100));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+        handler.release.countDown();
+        dispatcher.drain(TIMEOUT_MILLIS);
+        handler.awaitEntries(50);
+        assertEntries(handler.entries, 50);
+        assertFalse(handler.concurrent);
+    }
+
+    @Test
+    public void drainDeliversQueuedEntriesFromCallingThread() throws Exception {
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final List<LogEntry> entries = Collections.synchronizedList(new ArrayList<LogEntry>());
+        LogDispatcher dispatcher = new LogDispatcher("Dispatcher", 10000, 8, batch -> {
+            threads.add(Thread.currentThread());
+            entries.addAll(batch);
+        });
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(dispatcher.offer(createEntry(i)));
+        }
+        int drained = dispatcher.drain(TIMEOUT_MILLIS);
+        assertEntries(entries, 10000);
+        assertEquals(drained > 0, threads.contains(Thread.currentThread()));
+    }
+}
@@ -0,0 +1,261 @@
+package apps.in.android_logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writer thread scheduling, compression, rotation and draining of log file writer.
+ */
+public class LogFileWriterTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private interface Condition {
+        boolean isMet() throws Exception;
+    }
+
+    private static void waitFor(Condition condition) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.isMet()) {
+            assertTrue("condition is not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), UTF8);
+    }
+
+    /**
+     * Reads all members of gzip file, data of the last member is read up to the last sync flush
+     */
+    private static String readCompressed(File file) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream input = new GZIPInputStream(new FileInputStream(file))) {
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                output.write(buffer, 0, count);
+            }
+        } catch (EOFException e) {
+            // member is not finished yet
+        }
+        return new String(output.toByteArray(), UTF8);
+    }
+
+    private static void logMessages(LogFileWriter writer, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            writer.logToFile(System.currentTimeMillis(), LogLevel.INFO, "Tag", null, "message %d", new Object[]{i});
+        }
+    }
+
+    private static void assertMessages(String content, int from, int count) {
+        int position = 0;
+        for (int i = from; i < from + count; i++) {
+            position = content.indexOf("\tmessage " + i + "\n", position);
+            assertTrue("message " + i + " is missing or out of order", position >= 0);
+        }
+    }
+
+    private static LogFileWriter.Config createConfig(int batchSize, long lingerMillis) {
+        LogFileWriter.Config config = new LogFileWriter.Config();
+        config.batchSize = batchSize;
+        config.lingerMillis = lingerMillis;
+        config.overflowPolicy = OverflowPolicy.BLOCK;
+        config.blockTimeoutMillis = TIMEOUT_MILLIS;
+        return config;
+    }
+
+    /**
+     * Rotation creating numbered files in temporary folder
+     */
+    private class NumberedRotation implements LogFileWriter.FileRotation {
+        final List<File> files = Collections.synchronizedList(new ArrayList<File>());
+        final List<File> rotatedFiles = Collections.synchronizedList(new ArrayList<File>());
+
+        NumberedRotation(File firstFile) {
+            if (firstFile != null) {
+                files.add(firstFile);
+            }
+        }
+
+        @Override
+        public File nextFile() throws IOException {
+            File file = folder.newFile(files.size() + ".log");
+            files.add(file);
+            return file;
+        }
+
+        @Override
+        public void onFileRotated(File previousFile) {
+            rotatedFiles.add(previousFile);
+        }
+    }
+
+    @Test
+    public void fullBatchIsWrittenWithoutLinger() throws Exception {
+        final File logFile = folder.newFile("test.log");
+        LogFileWriter writer = new LogFileWriter(logFile, createConfig(10, 60000), null);
+        logMessages(writer, 0, 9);
+        Thread.sleep(200);
+        assertEquals(0, logFile.length());
+        logMessages(writer, 9, 1);
+        waitFor(() -> read(logFile).contains("\tmessage 9"));
+        assertMessages(read(logFile) + "\n", 0, 10);
+        writer.flush();
+    }
+
+    @Test
+    public void messageIsWrittenAfterLinger() throws Exception {
+        final File logFile = folder.newFile("test.log");
+        LogFileWriter writer = new LogFileWriter(logFile, createConfig(100, 50), null);
+        logMessages(writer, 0, 1);
+        waitFor(() -> logFile.length() > 0);
+        assertTrue(read(logFile).endsWith("\tmessage 0"));
+        writer.flush();
+    }
+
+    @Test
+    public void flushDoesNotWaitForLinger() throws Exception {
+        File logFile = folder.newFile("test.log");
+        LogFileWriter writer = new LogFileWriter(logFile, createConfig(100, 60000), null);
+        logMessages(writer, 0, 3);
+        long start = System.currentTimeMillis();
+        writer.flush();
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT_MILLIS);
+        assertMessages(read(logFile) + "\n", 0, 3);
+    }
+
+    @Test
+    public void compressedFileIsReadableAfterEveryBatch() throws Exception {
+        final File logFile = folder.newFile("test.log.gz");
+        LogFileWriter.Config config = createConfig(10, 0);
+        config.compress = true;
+        LogFileWriter writer = new LogFileWriter(logFile, config, null);
+        logMessages(writer, 0, 10);
+        waitFor(() -> readCompressed(logFile).contains("\tmessage 9"));
+        writer.flush();
+        writer = new LogFileWriter(logFile, config, null);
+        logMessages(writer, 10, 10);
+        writer.flush();
+        assertMessages(readCompressed(logFile) + "\n", 0, 20);
+    }
+
+    @Test
+    public void rotatesBySize() throws Exception {
+        File first = folder.newFile("0.log");
+        NumberedRotation rotation = new NumberedRotation(first);
+        LogFileWriter.Config config = createConfig(16, 0);
+        config.maxFileSize = 4096;
+        LogFileWriter writer = new LogFileWriter(first, config, rotation);
+        logMessages(writer, 0, 2000);
+        writer.flush();
+        List<File> files = new ArrayList<>(rotation.files);
+        assertTrue(files.size() > 1);
+        assertEquals(files.subList(0, files.size() - 1), rotation.rotatedFiles);
+        StringBuilder content = new StringBuilder();
+        for (File file : files.subList(0, files.size() - 1)) {
+            assertTrue(file.length() >= 4096);
+            content.append(read(file));
+        }
+        content.append(read(files.get(files.size() - 1)));
+        assertMessages(content.append('\n').toString(), 0, 2000);
+    }
+
+    @Test
+    public void rotatesByAge() throws Exception {
+        File first = folder.newFile("0.log");
+        final NumberedRotation rotation = new NumberedRotation(first);
+        LogFileWriter.Config config = createConfig(16, 0);
+        config.maxFileAgeMillis = 200;
+        LogFileWriter writer = new LogFileWriter(first, config, rotation);
+        logMessages(writer, 0, 1);
+        Thread.sleep(300);
+        logMessages(writer, 1, 1);
+        waitFor(() -> rotation.files.size() == 2);
+        logMessages(writer, 2, 1);
+        writer.flush();
+        assertEquals(Collections.singletonList(first), rotation.rotatedFiles);
+        assertMessages(read(first) + "\n", 0, 2);
+        assertMessages(read(rotation.files.get(1)) + "\n", 2, 1);
+    }
+
+    @Test
+    public void emergencyDrainWritesFromCallingThread() throws Exception {
+        File logFile = folder.newFile("test.log");
+        LogFileWriter writer = new LogFileWriter(logFile, createConfig(1000, 60000), null);
+        logMessages(writer, 0, 50);
+        assertEquals(50, writer.emergencyDrain(1000));
+        String content = read(logFile);
+        assertMessages(content, 0, 50);
+        assertTrue(content.contains(":[Logger]:W:\t50 messages written at crash in "));
+        writer.flush();
+    }
+
+    @Test
+    public void countsWrittenMessagesAndBytes() throws Exception {
+        File logFile = folder.newFile("test.log");
+        LogFileWriter writer = new LogFileWriter(logFile, createConfig(10, 0), null);
+        logMessages(writer, 0, 100);
+        writer.flush();
+        assertEquals(100, writer.getEnqueuedCount());
+        assertEquals(100, writer.getWrittenCount());
+        assertEquals(logFile.length(), writer.getWrittenBytes());
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(0, writer.getDroppedCount());
+        LogStats.Histogram batchSizes = writer.getBatchSizes();
+        assertEquals(100, batchSizes.getSum());
+        assertTrue(batchSizes.getMax() <= 100);
+        assertEquals(batchSizes.getCount(), writer.getWriteLatencyNanos().getCount());
+    }
+
+    @Test
+    public void firstFileIsTakenFromRotation() throws Exception {
+        final CountDownLatch ready = new CountDownLatch(1);
+        final NumberedRotation rotation = new NumberedRotation(null) {
+            @Override
+            public File nextFile() throws IOException {
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return super.nextFile();
+            }
+        };
+        LogFileWriter writer = new LogFileWriter(null, createConfig(16, 0), rotation);
+        logMessages(writer, 0, 100);
+        assertNull(writer.getLogFile());
+        List<LogCrashTail.Entry> recovered = new ArrayList<>();
+        recovered.add(new LogCrashTail.Entry(1700000000000L, LogLevel.ERROR, "Tag", "recovered message"));
+        writer.logRecovered(recovered);
+        ready.countDown();
+        writer.flush();
+        assertEquals(1, rotation.files.size());
+        String content = read(rotation.files.get(0));
+        assertTrue(content.contains("1 messages of previous run recovered from crash tail"));
+        assertTrue(content.indexOf("\trecovered message") < content.indexOf("\tmessage 0\n"));
+        assertMessages(content + "\n", 0, 100);
+    }
+}
@@ -0,0 +1,57 @@
+package apps.in.android_logger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Histogram counts values in power-of-two buckets and estimates percentiles from them.
+ */
+public class LogHistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        LogStats.Histogram histogram = new LogHistogram().snapshot();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void countsSumAndMax() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(0);
+        histogram.record(5);
+        histogram.record(-3);
+        histogram.record(1000);
+        LogStats.Histogram snapshot = histogram.snapshot();
+        assertEquals(4, snapshot.getCount());
+        assertEquals(1005, snapshot.getSum());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(251, snapshot.getMean());
+    }
+
+    @Test
+    public void percentileIsUpperBoundOfBucket() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(10);
+        }
+        histogram.record(100000);
+        LogStats.Histogram snapshot = histogram.snapshot();
+        assertEquals(15, snapshot.getPercentile(50));
+        assertEquals(15, snapshot.getPercentile(99));
+        assertEquals(100000, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void snapshotDoesNotChange() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(1);
+        LogStats.Histogram snapshot = histogram.snapshot();
+        histogram.record(2);
+        assertEquals(1, snapshot.getCount());
+        assertEquals(2, histogram.snapshot().getCount());
+    }
+}
@@ -0,0 +1,53 @@
+package apps.in.android_logger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Level filter applies tag levels over the global level and never changes in place.
+ */
+public class LogLevelFilterTest {
+
+    @Test
+    public void globalLevel() {
+        LogLevelFilter filter = new LogLevelFilter(LogLevel.INFO);
+        assertFalse(filter.isLoggable(LogLevel.DEBUG, "Tag"));
+        assertTrue(filter.isLoggable(LogLevel.INFO, "Tag"));
+        assertTrue(filter.isLoggable(LogLevel.ERROR, null));
+        LogLevelFilter changed = filter.withGlobalLevel(LogLevel.VERBOSE);
+        assertTrue(changed.isLoggable(LogLevel.VERBOSE, "Tag"));
+        assertFalse(filter.isLoggable(LogLevel.VERBOSE, "Tag"));
+    }
+
+    @Test
+    public void tagLevelOverridesGlobalLevel() {
+        LogLevelFilter filter = new LogLevelFilter(LogLevel.WARN)
+                .withTagLevel("Verbose", LogLevel.VERBOSE)
+                .withTagLevel("Quiet", LogLevel.ERROR);
+        assertTrue(filter.isLoggable(LogLevel.VERBOSE, "Verbose"));
+        assertFalse(filter.isLoggable(LogLevel.WARN, "Quiet"));
+        assertTrue(filter.isLoggable(LogLevel.ERROR, "Quiet"));
+        assertFalse(filter.isLoggable(LogLevel.INFO, "Other"));
+        assertTrue(filter.isLoggable(LogLevel.WARN, "Other"));
+        assertFalse(filter.isLoggable(LogLevel.DEBUG, null));
+    }
+
+    @Test
+    public void tagLevelIsKeptWhenGlobalLevelChanges() {
+        LogLevelFilter filter = new LogLevelFilter(LogLevel.WARN)
+                .withTagLevel("Tag", LogLevel.DEBUG)
+                .withGlobalLevel(LogLevel.ERROR);
+        assertTrue(filter.isLoggable(LogLevel.DEBUG, "Tag"));
+        assertFalse(filter.isLoggable(LogLevel.WARN, "Other"));
+    }
+
+    @Test
+    public void removedTagLevelFallsBackToGlobalLevel() {
+        LogLevelFilter filter = new LogLevelFilter(LogLevel.WARN).withTagLevel("Tag", LogLevel.DEBUG);
+        LogLevelFilter removed = filter.withTagLevel("Tag", null);
+        assertFalse(removed.isLoggable(LogLevel.DEBUG, "Tag"));
+        assertTrue(removed.isLoggable(LogLevel.WARN, "Tag"));
+        assertTrue(filter.isLoggable(LogLevel.DEBUG, "Tag"));
+    }
+}
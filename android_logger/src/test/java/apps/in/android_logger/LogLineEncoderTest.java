@@ -0,0 +1,115 @@
+package apps.in.android_logger;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Byte-exact output of text log encoder.
+ */
+public class LogLineEncoderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final LogLineEncoder encoder = new LogLineEncoder();
+    private final LogOutputBuffer output = new LogOutputBuffer();
+
+    static byte[] toBytes(LogOutputBuffer output) {
+        ByteBuffer[] chunks = output.flip();
+        int length = 0;
+        for (int i = 0; i < output.chunkCount(); i++) {
+            length += chunks[i].remaining();
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (int i = 0; i < output.chunkCount(); i++) {
+            int remaining = chunks[i].remaining();
+            chunks[i].get(bytes, offset, remaining);
+            offset += remaining;
+        }
+        output.clear();
+        return bytes;
+    }
+
+    private static String format(long time) {
+        return new SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSS", Locale.US).format(new Date(time));
+    }
+
+    private String encode(long time, LogLevel level, String tag, String context, String message) {
+        encoder.encode(time, level, tag, context, message, output);
+        return new String(toBytes(output), UTF8);
+    }
+
+    @Test
+    public void lineLayout() {
+        long time = 1700000000123L;
+        assertEquals("\n" + format(time) + ":[Tag]:I:\tmessage", encode(time, LogLevel.INFO, "Tag", null, "message"));
+        assertEquals("\n" + format(time) + ":[Tag]:E:\tContext: message", encode(time, LogLevel.ERROR, "Tag", "Context", "message"));
+        assertEquals("\n" + format(time) + ":[null]:V:\tnull", encode(time, LogLevel.VERBOSE, null, null, null));
+    }
+
+    @Test
+    public void levelLetters() {
+        long time = 1700000000000L;
+        for (LogLevel level : LogLevel.values()) {
+            assertEquals("\n" + format(time) + ":[T]:" + level.letter + ":\tm", encode(time, level, "T", null, "m"));
+        }
+    }
+
+    @Test
+    public void dateCacheRollsOverEverySecond() {
+        long second = 1700000009000L;
+        long[] times = {second - 1, second, second + 999, second + 1000, second + 60000 - 1, second + 60000, second - 1};
+        for (long time : times) {
+            assertEquals("\n" + format(time) + ":[T]:D:\tm", encode(time, LogLevel.DEBUG, "T", null, "m"));
+        }
+    }
+
+    @Test
+    public void dateCacheRollsOverAtMidnight() {
+        SimpleDateFormat dayFormat = new SimpleDateFormat("dd.MM.yyyy", Locale.US);
+        long time = 1700000000000L;
+        String day = dayFormat.format(new Date(time));
+        while (dayFormat.format(new Date(time)).equals(day)) {
+            time += 1000;
+        }
+        for (long t = time - 2000; t <= time + 1000; t += 500) {
+            assertEquals("\n" + format(t) + ":[T]:W:\tm", encode(t, LogLevel.WARN, "T", null, "m"));
+        }
+    }
+
+    @Test
+    public void utf8Encoding() {
+        long time = 1700000000000L;
+        String message = "ascii é ж \u20AC \uD83D\uDE00";
+        byte[] expected = ("\n" + format(time) + ":[Тег]:I:\t" + message).getBytes(UTF8);
+        encoder.encode(time, LogLevel.INFO, "Тег", null, message, output);
+        assertArrayEquals(expected, toBytes(output));
+        assertEquals(message.getBytes(UTF8).length, LogLineEncoder.getUtf8Length(message));
+    }
+
+    @Test
+    public void loneSurrogatesAreReplaced() {
+        String message = "a\uD83Db\uDE00c\uD83D";
+        LogLineEncoder.putString(message, output);
+        assertEquals("a?b?c?", new String(toBytes(output), UTF8));
+        assertEquals(6, LogLineEncoder.getUtf8Length(message));
+    }
+
+    @Test
+    public void messageLargerThanChunk() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            builder.append("é").append(i % 10);
+        }
+        String message = builder.toString();
+        long time = 1700000000000L;
+        assertEquals("\n" + format(time) + ":[T]:I:\t" + message, encode(time, LogLevel.INFO, "T", null, message));
+    }
+}
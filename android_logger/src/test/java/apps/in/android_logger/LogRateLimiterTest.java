@@ -0,0 +1,93 @@
+package apps.in.android_logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rate limits and sampling, including messages without tag.
+ */
+public class LogRateLimiterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void untaggedMessagesUseGlobalLimit() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setLimit(null, 2, 0);
+        assertTrue(limiter.tryAcquire(null));
+        assertTrue(limiter.tryAcquire(null));
+        assertFalse(limiter.tryAcquire(null));
+        assertEquals(1, limiter.getRateLimitedCount());
+        assertEquals("Suppressed messages: [(no tag)] 1 rate limited, 0 sampled out", limiter.drainSuppressed());
+        assertNull(limiter.drainSuppressed());
+    }
+
+    @Test
+    public void untaggedMessagesDoNotUseTagLimit() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setLimit("Tag", 1, 0);
+        assertTrue(limiter.tryAcquire("Tag"));
+        assertFalse(limiter.tryAcquire("Tag"));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire(null));
+        }
+    }
+
+    @Test
+    public void chargeOfUntaggedMessage() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setLimit(null, 0, 10);
+        assertTrue(limiter.tryAcquire(null));
+        limiter.charge(null, 100);
+        assertFalse(limiter.tryAcquire(null));
+        assertTrue(limiter.tryAcquire("Other"));
+    }
+
+    @Test
+    public void perTagLimit() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setLimit("Noisy", 1, 0);
+        assertTrue(limiter.tryAcquire("Noisy"));
+        assertFalse(limiter.tryAcquire("Noisy"));
+        assertTrue(limiter.tryAcquire("Quiet"));
+        assertTrue(limiter.tryAcquire("Quiet"));
+    }
+
+    @Test
+    public void sampling() {
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setSampleRate(null, 0);
+        assertFalse(limiter.tryAcquire(null));
+        assertFalse(limiter.tryAcquire("Tag"));
+        assertEquals(2, limiter.getSampledOutCount());
+        limiter.setSampleRate("Kept", 1);
+        assertTrue(limiter.tryAcquire("Kept"));
+    }
+
+    @Test
+    public void writerChargesUntaggedMessages() throws Exception {
+        File logFile = folder.newFile("test.log");
+        LogRateLimiter limiter = new LogRateLimiter();
+        limiter.setLimit(null, 1000, 100000);
+        LogFileWriter writer = new LogFileWriter(logFile);
+        writer.setRateLimiter(limiter);
+        for (int i = 0; i < 10; i++) {
+            writer.logToFile(System.currentTimeMillis(), null, "untagged " + i);
+        }
+        writer.logToFile(System.currentTimeMillis(), "Tag", "tagged");
+        writer.flush();
+        String content = new String(Files.readAllBytes(logFile.toPath()), Charset.forName("UTF-8"));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(content.contains(":[null]:I:\tuntagged " + i));
+        }
+        assertTrue(content.contains(":[Tag]:I:\ttagged"));
+    }
+}
@@ -0,0 +1,221 @@
+package apps.in.android_logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Ring buffer claim, publish and drain order, and overflow policies of file writer.
+ */
+public class LogRingBufferTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final class Slot {
+        int value;
+    }
+
+    @Test
+    public void capacityIsRoundedUp() {
+        assertEquals(8, new LogRingBuffer<>(5, Slot::new).capacity());
+        assertEquals(8, new LogRingBuffer<>(8, Slot::new).capacity());
+        assertEquals(2, new LogRingBuffer<>(1, Slot::new).capacity());
+    }
+
+    @Test
+    public void claimFailsWhenFull() {
+        LogRingBuffer<Slot> buffer = new LogRingBuffer<>(4, Slot::new);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, buffer.claim());
+        }
+        assertEquals(-1, buffer.claim());
+        assertEquals(4, buffer.size());
+        assertEquals(4, buffer.getClaimedCount());
+    }
+
+    @Test
+    public void drainStopsAtUnpublishedSlot() {
+        LogRingBuffer<Slot> buffer = new LogRingBuffer<>(4, Slot::new);
+        long first = buffer.claim();
+        long second = buffer.claim();
+        buffer.get(second).value = 2;
+        buffer.publish(second);
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(0, buffer.drain(slot -> drained.add(slot.value), 10));
+        assertNull(buffer.peek());
+        buffer.get(first).value = 1;
+        buffer.publish(first);
+        assertEquals(2, buffer.drain(slot -> drained.add(slot.value), 10));
+        assertEquals(Arrays.asList(1, 2), drained);
+        assertTrue(buffer.isEmpty());
+        assertEquals(2, buffer.getReleasedCount());
+    }
+
+    @Test
+    public void wrapsAroundInClaimOrder() {
+        LogRingBuffer<Slot> buffer = new LogRingBuffer<>(4, Slot::new);
+        List<Integer> drained = new ArrayList<>();
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                long sequence = buffer.claim();
+                assertTrue(sequence >= 0);
+                buffer.get(sequence).value = next++;
+                buffer.publish(sequence);
+            }
+            assertEquals(2, buffer.drain(slot -> drained.add(slot.value), 2));
+            assertEquals(1, buffer.drain(slot -> drained.add(slot.value), 2));
+        }
+        assertEquals(next, drained.size());
+        for (int i = 0; i < next; i++) {
+            assertEquals(i, (int) drained.get(i));
+        }
+    }
+
+    @Test
+    public void peekAndRelease() {
+        LogRingBuffer<Slot> buffer = new LogRingBuffer<>(2, Slot::new);
+        for (int round = 0; round < 5; round++) {
+            long sequence = buffer.claim();
+            buffer.get(sequence).value = round;
+            buffer.publish(sequence);
+            assertEquals(round, buffer.peek().value);
+            buffer.release();
+            assertNull(buffer.peek());
+        }
+    }
+
+    @Test
+    public void concurrentProducers() throws Exception {
+        final LogRingBuffer<Slot> buffer = new LogRingBuffer<>(64, Slot::new);
+        final int producers = 4;
+        final int perProducer = 10000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long sequence;
+                    while ((sequence = buffer.claim()) < 0) {
+                        Thread.yield();
+                    }
+                    buffer.get(sequence).value = base + i;
+                    buffer.publish(sequence);
+                }
+            });
+            threads[p].start();
+        }
+        final int[] lastByProducer = new int[producers];
+        Arrays.fill(lastByProducer, -1);
+        final int[] count = new int[1];
+        while (count[0] < producers * perProducer) {
+            buffer.drain(slot -> {
+                int producer = slot.value / perProducer;
+                assertTrue(slot.value > lastByProducer[producer]);
+                lastByProducer[producer] = slot.value;
+                count[0]++;
+            }, 16);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    /**
+     * Creates writer which cannot open its log file until the directory is created, so nothing is drained
+     */
+    private LogFileWriter createBlockedWriter(File logFile, OverflowPolicy policy) {
+        LogFileWriter.Config config = new LogFileWriter.Config();
+        config.overflowPolicy = policy;
+        config.blockTimeoutMillis = 5;
+        return new LogFileWriter(logFile, config, null);
+    }
+
+    private static void logMessages(LogFileWriter writer, int count) {
+        for (int i = 0; i < count; i++) {
+            writer.logToFile(System.currentTimeMillis(), LogLevel.INFO, "T", null, "message %d", new Object[]{i});
+        }
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void dropNewestPolicy() throws Exception {
+        File directory = new File(folder.getRoot(), "later");
+        File logFile = new File(directory, "test.log");
+        LogFileWriter writer = createBlockedWriter(logFile, OverflowPolicy.DROP_NEWEST);
+        logMessages(writer, 1100);
+        assertEquals(76, writer.getDroppedCount());
+        assertEquals(76, writer.getOverflowCount());
+        assertTrue(directory.mkdir());
+        writer.flush();
+        String content = read(logFile);
+        assertTrue(content.contains("\tmessage 0\n"));
+        assertTrue(content.contains("\tmessage 1023\n"));
+        assertFalse(content.contains("\tmessage 1024"));
+        assertTrue(content.contains("76 messages dropped (log buffer overflow)"));
+        assertEquals(1024, writer.getWrittenCount());
+    }
+
+    @Test
+    public void dropOldestPolicy() throws Exception {
+        File directory = new File(folder.getRoot(), "later");
+        File logFile = new File(directory, "test.log");
+        LogFileWriter writer = createBlockedWriter(logFile, OverflowPolicy.DROP_OLDEST);
+        logMessages(writer, 1100);
+        assertEquals(76, writer.getDroppedCount());
+        assertEquals(76, writer.getOverflowCount());
+        assertTrue(directory.mkdir());
+        writer.flush();
+        String content = read(logFile);
+        assertFalse(content.contains("\tmessage 75\n"));
+        assertTrue(content.contains("\tmessage 76\n"));
+        assertTrue(content.contains("\tmessage 1099"));
+        assertEquals(1024, writer.getWrittenCount());
+    }
+
+    @Test
+    public void blockPolicyCountsOverflowOncePerMessage() throws Exception {
+        File directory = new File(folder.getRoot(), "later");
+        File logFile = new File(directory, "test.log");
+        LogFileWriter writer = createBlockedWriter(logFile, OverflowPolicy.BLOCK);
+        logMessages(writer, 1030);
+        assertEquals(6, writer.getDroppedCount());
+        assertEquals(6, writer.getOverflowCount());
+        assertTrue(directory.mkdir());
+        writer.flush();
+        assertEquals(1024, writer.getWrittenCount());
+    }
+
+    @Test
+    public void spillPolicy() throws Exception {
+        File logFile = folder.newFolder("test.log");
+        LogFileWriter writer = createBlockedWriter(logFile, OverflowPolicy.SPILL);
+        logMessages(writer, 1100);
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(76, writer.getSpilledCount());
+        assertEquals(76, writer.getOverflowCount());
+        String spilled = read(new File(folder.getRoot(), "test.overflow.log"));
+        assertTrue(spilled.contains("\tmessage 1024"));
+        assertTrue(spilled.contains("\tmessage 1099"));
+        assertFalse(spilled.contains("\tmessage 1023"));
+        assertTrue(logFile.delete());
+        writer.flush();
+        String content = read(logFile);
+        assertTrue(content.contains("76 messages written to test.overflow.log (log buffer overflow)"));
+        assertEquals(1024, writer.getWrittenCount());
+    }
+}
@@ -0,0 +1,182 @@
+package apps.in.android_logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Search in text log files: indexed search finds the same messages as full scan.
+ */
+public class LogSearcherTest {
+
+    private static final long TIME = 1700000000000L;
+    private static final String[] TAGS = {"Main", "Network", "Database", "Ui", "Sync", null};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void logMessages(LogFileWriter writer, int from, int count) {
+        LogLevel[] levels = LogLevel.values();
+        for (int i = from; i < from + count; i++) {
+            String message = i % 50 == 0
+                    ? "multi line alpha" + i % 13 + "\nsecond line beta" + i % 17 + " ünïcode"
+                    : "event alpha" + i % 13 + " beta" + i % 17 + " number " + i;
+            writer.logToFile(TIME + i * 10L, levels[i % levels.length], TAGS[i % TAGS.length], i % 3 == 0 ? "Context" + i % 4 : null, message, null);
+        }
+    }
+
+    private static List<String> search(List<File> files, LogSearch search) {
+        List<String> results = new ArrayList<>();
+        for (LogEntry entry : LogSearcher.search(files, search)) {
+            results.add(entry.getTime() + " " + entry.getLevel() + " [" + entry.getTag() + "] " + entry.getMessage());
+        }
+        return results;
+    }
+
+    private static List<LogSearch> getSearches() {
+        List<LogSearch> searches = new ArrayList<>();
+        searches.add(new LogSearch().setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setTag("Network").setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setTag("null").setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setText("ALPHA7").setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setText("alpha3 beta5").setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setText("number 12345").setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setText("second line").setTag("Main").setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setText("context2").setMinLevel(LogLevel.WARN).setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setText("ünïcode").setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setText("missing").setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setTimeRange(TIME + 50000, TIME + 60000).setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setTimeRange(TIME + 100000, TIME + 100000).setMaxResults(Integer.MAX_VALUE));
+        searches.add(new LogSearch().setTag("Sync").setText("beta16").setMinLevel(LogLevel.DEBUG)
+                .setTimeRange(TIME + 20000, TIME + 180000).setMaxResults(Integer.MAX_VALUE));
+        return searches;
+    }
+
+    private LogFileWriter createWriter(File logFile, LogFileWriter.FileRotation rotation, long maxFileSize) {
+        LogFileWriter.Config config = new LogFileWriter.Config();
+        config.index = true;
+        config.maxFileSize = maxFileSize;
+        config.overflowPolicy = OverflowPolicy.BLOCK;
+        config.blockTimeoutMillis = 10000;
+        return new LogFileWriter(logFile, config, rotation);
+    }
+
+    @Test
+    public void indexHasNoFalseNegatives() throws IOException {
+        File logFile = folder.newFile("test.log");
+        LogFileWriter writer = createWriter(logFile, null, 0);
+        logMessages(writer, 0, 20000);
+        writer.flush();
+        File indexFile = LogFileIndex.getIndexFile(logFile);
+        assertTrue(indexFile.length() > 0);
+        List<File> files = Collections.singletonList(logFile);
+        List<List<String>> indexed = new ArrayList<>();
+        for (LogSearch search : getSearches()) {
+            indexed.add(search(files, search));
+        }
+        assertTrue(indexFile.delete());
+        List<LogSearch> searches = getSearches();
+        for (int i = 0; i < searches.size(); i++) {
+            assertEquals(search(files, searches.get(i)), indexed.get(i));
+        }
+        assertEquals(20000, indexed.get(0).size());
+        assertEquals(3334, indexed.get(1).size());
+        assertEquals(1, indexed.get(5).size());
+        assertEquals(0, indexed.get(9).size());
+        assertEquals(1, indexed.get(11).size());
+    }
+
+    @Test
+    public void indexSelectsBlocks() throws IOException {
+        File logFile = folder.newFile("test.log");
+        LogFileWriter writer = createWriter(logFile, null, 0);
+        logMessages(writer, 0, 20000);
+        writer.flush();
+        long[] ranges = {0, 0};
+        for (long[] range : LogFileIndex.getRanges(logFile, logFile.length(), new LogSearch().setText("number 12345"))) {
+            ranges[0]++;
+            ranges[1] += range[1] - range[0];
+        }
+        assertTrue(ranges[0] > 0);
+        assertTrue(ranges[1] < logFile.length() / 4);
+    }
+
+    @Test
+    public void searchAcrossRotatedFiles() throws IOException {
+        final List<File> files = new ArrayList<>();
+        File first = folder.newFile("0.log");
+        files.add(first);
+        LogFileWriter writer = createWriter(first, new LogFileWriter.FileRotation() {
+            @Override
+            public File nextFile() throws IOException {
+                File file = folder.newFile(files.size() + ".log");
+                files.add(file);
+                return file;
+            }
+
+            @Override
+            public void onFileRotated(File previousFile) {
+            }
+        }, 100 * 1024);
+        logMessages(writer, 0, 20000);
+        writer.flush();
+        assertTrue(files.size() > 5);
+        List<String> all = search(files, new LogSearch().setText("alpha5").setMaxResults(Integer.MAX_VALUE));
+        List<String> expected = new ArrayList<>();
+        for (File file : files) {
+            assertTrue(LogFileIndex.getIndexFile(file).exists());
+            assertTrue(LogFileIndex.getIndexFile(file).delete());
+            expected.addAll(search(Collections.singletonList(file), new LogSearch().setText("alpha5").setMaxResults(Integer.MAX_VALUE)));
+        }
+        assertEquals(expected, all);
+        assertEquals(1539, all.size());
+        List<String> limited = search(files, new LogSearch().setText("alpha5").setMaxResults(10));
+        assertEquals(all.subList(0, 10), limited);
+    }
+
+    @Test
+    public void compressedAndBinaryFilesAreSkipped() throws IOException {
+        LogFileWriter.Config compressed = new LogFileWriter.Config();
+        compressed.compress = true;
+        File compressedFile = folder.newFile("compressed.log.gz");
+        LogFileWriter writer = new LogFileWriter(compressedFile, compressed, null);
+        logMessages(writer, 0, 100);
+        writer.flush();
+        LogFileWriter.Config binary = new LogFileWriter.Config();
+        binary.format = LogFileFormat.BINARY;
+        File binaryFile = folder.newFile("binary.blog");
+        writer = new LogFileWriter(binaryFile, binary, null);
+        logMessages(writer, 0, 100);
+        writer.flush();
+        File textFile = folder.newFile("text.log");
+        writer = new LogFileWriter(textFile);
+        logMessages(writer, 0, 100);
+        writer.flush();
+        assertTrue(compressedFile.length() > 0);
+        assertTrue(binaryFile.length() > 0);
+        List<File> files = new ArrayList<>();
+        files.add(compressedFile);
+        files.add(binaryFile);
+        files.add(textFile);
+        assertEquals(search(Collections.singletonList(textFile), new LogSearch()), search(files, new LogSearch()));
+        assertEquals(100, search(files, new LogSearch()).size());
+    }
+
+    @Test
+    public void multiLineMessage() throws IOException {
+        File logFile = folder.newFile("test.log");
+        LogFileWriter writer = createWriter(logFile, null, 0);
+        logMessages(writer, 0, 1);
+        writer.flush();
+        List<String> results = search(Collections.singletonList(logFile), new LogSearch().setText("beta0"));
+        assertEquals(Collections.singletonList(TIME + " VERBOSE [Main] Context0: multi line alpha0\nsecond line beta0 ünïcode"), results);
+    }
+}
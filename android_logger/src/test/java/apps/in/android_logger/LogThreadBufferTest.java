@@ -0,0 +1,129 @@
+package apps.in.android_logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per-thread buffers keep order of records and are merged by writer in time order.
+ */
+public class LogThreadBufferTest {
+
+    private static final long TIME = 1700000000000L;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void publish(LogThreadBuffer buffer, long time) {
+        LogRecord record = buffer.claim();
+        assertNotNull(record);
+        record.set(time, LogLevel.INFO, "Tag", null, "message", null, -1);
+        buffer.publish();
+    }
+
+    private static LogFileWriter createWriter(File logFile, long lingerMillis) {
+        LogFileWriter.Config config = new LogFileWriter.Config();
+        config.threadBuffers = true;
+        config.lingerMillis = lingerMillis;
+        config.overflowPolicy = OverflowPolicy.BLOCK;
+        config.blockTimeoutMillis = TIMEOUT_MILLIS;
+        return new LogFileWriter(logFile, config, null);
+    }
+
+    @Test
+    public void recordsAreReleasedInOrder() {
+        LogThreadBuffer buffer = new LogThreadBuffer(3, Thread.currentThread());
+        assertNull(buffer.peek());
+        for (int i = 0; i < 4; i++) {
+            publish(buffer, TIME + i);
+        }
+        assertNull(buffer.claim());
+        assertEquals(4, buffer.size());
+        assertEquals(TIME, buffer.peek().time);
+        buffer.release();
+        publish(buffer, TIME + 4);
+        for (int i = 1; i < 5; i++) {
+            assertEquals(TIME + i, buffer.peek().time);
+            buffer.release();
+        }
+        assertNull(buffer.peek());
+        assertEquals(5, buffer.getPublishedCount());
+        assertEquals(5, buffer.getReleasedCount());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void consumerSeesRecordsOfProducerThread() throws Exception {
+        final int count = 100000;
+        final LogThreadBuffer[] buffer = new LogThreadBuffer[1];
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                LogRecord record;
+                while ((record = buffer[0].claim()) == null) {
+                    Thread.yield();
+                }
+                record.set(TIME + i, LogLevel.INFO, "Tag", null, "message", null, -1);
+                buffer[0].publish();
+            }
+        });
+        buffer[0] = new LogThreadBuffer(64, producer);
+        producer.start();
+        for (int i = 0; i < count; i++) {
+            LogRecord record;
+            while ((record = buffer[0].peek()) == null) {
+                Thread.yield();
+            }
+            assertEquals(TIME + i, record.time);
+            buffer[0].release();
+        }
+        producer.join();
+        assertTrue(buffer[0].isAbandoned());
+    }
+
+    @Test
+    public void writerMergesThreadsInTimeOrder() throws Exception {
+        File logFile = folder.newFile("test.log");
+        final LogFileWriter writer = createWriter(logFile, 60000);
+        final long time = System.currentTimeMillis();
+        for (int thread = 0; thread < 4; thread++) {
+            final int offset = thread;
+            Thread producer = new Thread(() -> {
+                for (int i = offset; i < 400; i += 4) {
+                    writer.logToFile(time + i, LogLevel.INFO, "Tag", null, "message %d", new Object[]{i});
+                }
+            });
+            producer.start();
+            producer.join();
+        }
+        writer.flush();
+        String content = new String(Files.readAllBytes(logFile.toPath()), Charset.forName("UTF-8")) + "\n";
+        int position = 0;
+        for (int i = 0; i < 400; i++) {
+            position = content.indexOf("\tmessage " + i + "\n", position);
+            assertTrue("message " + i + " is missing or out of order", position >= 0);
+        }
+    }
+
+    @Test
+    public void writerWakesUpForEveryMessage() throws Exception {
+        File logFile = folder.newFile("test.log");
+        LogFileWriter writer = createWriter(logFile, 0);
+        for (int i = 0; i < 2000; i++) {
+            long length = logFile.length();
+            writer.logToFile(System.currentTimeMillis(), LogLevel.INFO, "Tag", null, "message %d", new Object[]{i});
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (logFile.length() == length) {
+                assertTrue("writer missed message " + i, System.currentTimeMillis() < deadline);
+                Thread.yield();
+            }
+        }
+        writer.flush();
+    }
+}
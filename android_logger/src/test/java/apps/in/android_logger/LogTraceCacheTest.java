@@ -0,0 +1,96 @@
+package apps.in.android_logger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Trace cache identifies repeated stack traces and counts their repeats.
+ */
+public class LogTraceCacheTest {
+
+    private static Exception createException(String message) {
+        return new IllegalStateException(message);
+    }
+
+    private static Exception createOtherException() {
+        return new IllegalArgumentException("other");
+    }
+
+    @Test
+    public void repeatedTraceGetsSameId() {
+        LogTraceCache cache = new LogTraceCache(16);
+        Exception exception = createException("first");
+        LogTraceCache.Occurrence first = cache.record(exception);
+        assertTrue(first.isFirst());
+        LogTraceCache.Occurrence second = cache.record(exception);
+        assertFalse(second.isFirst());
+        assertEquals(first.id, second.id);
+        assertEquals(2, second.count);
+        LogTraceCache.Occurrence other = cache.record(createOtherException());
+        assertTrue(other.isFirst());
+        assertNotEquals(first.id, other.id);
+    }
+
+    @Test
+    public void messageIsNotPartOfTrace() {
+        LogTraceCache cache = new LogTraceCache(16);
+        Exception[] exceptions = new Exception[2];
+        for (int i = 0; i < exceptions.length; i++) {
+            exceptions[i] = createException("message " + i);
+        }
+        assertEquals(cache.record(exceptions[0]).id, cache.record(exceptions[1]).id);
+    }
+
+    @Test
+    public void causeIsPartOfTrace() {
+        LogTraceCache cache = new LogTraceCache(16);
+        Exception exception = createException("first");
+        Exception wrapped = new RuntimeException(exception);
+        assertTrue(cache.record(exception).isFirst());
+        assertTrue(cache.record(wrapped).isFirst());
+    }
+
+    @Test
+    public void repeatsAreReportedOnce() {
+        LogTraceCache cache = new LogTraceCache(16);
+        Exception exception = createException("first");
+        Exception other = createOtherException();
+        assertNull(cache.drainRepeats());
+        cache.record(exception);
+        cache.record(other);
+        cache.record(exception);
+        cache.record(exception);
+        cache.record(other);
+        assertEquals("Repeated exceptions: trace #1 x 2, trace #2 x 1", cache.drainRepeats());
+        assertNull(cache.drainRepeats());
+        assertEquals(4, cache.record(exception).count);
+    }
+
+    @Test
+    public void resetForgetsTraces() {
+        LogTraceCache cache = new LogTraceCache(16);
+        Exception exception = createException("first");
+        cache.record(exception);
+        cache.record(exception);
+        assertEquals("Repeated exceptions: trace #1 x 1", cache.reset());
+        assertNull(cache.reset());
+        LogTraceCache.Occurrence occurrence = cache.record(exception);
+        assertTrue(occurrence.isFirst());
+        assertEquals(2, occurrence.id);
+    }
+
+    @Test
+    public void leastRecentlySeenTraceIsEvicted() {
+        LogTraceCache cache = new LogTraceCache(2);
+        Exception first = createException("first");
+        Exception second = createOtherException();
+        Exception third = new UnsupportedOperationException();
+        cache.record(first);
+        cache.record(second);
+        cache.record(first);
+        cache.record(third);
+        assertFalse(cache.record(first).isFirst());
+        assertTrue(cache.record(second).isFirst());
+    }
+}
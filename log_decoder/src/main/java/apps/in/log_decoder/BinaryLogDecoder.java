@@ -0,0 +1,182 @@
+package apps.in.log_decoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Converts binary log files written by the logger to its text layout.
+ * <p>
+ * The format is described in BinaryLogEncoder of the android_logger module, constants must be kept in sync.
+ */
+public class BinaryLogDecoder {
+
+    private static final byte[] MAGIC = {'I', 'N', 'L', 'B'};
+    private static final int VERSION = 1;
+    private static final int RECORD_TAG = 1;
+    private static final int RECORD_CONTEXT = 2;
+    private static final int RECORD_ENTRY = 3;
+    private static final char[] LEVEL_LETTERS = {'V', 'D', 'I', 'W', 'E'};
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final HashMap<Long, String> tags = new HashMap<>();
+    private final HashMap<Long, String> contexts = new HashMap<>();
+    private final SimpleDateFormat dateTimeFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSS", Locale.US);
+    private final TimeZone timeZone;
+
+    /**
+     * Creates decoder.
+     *
+     * @param timeZone time zone of output timestamps, null to use time zone of the device which wrote the file
+     */
+    public BinaryLogDecoder(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Usage: BinaryLogDecoder input.blog[.gz] [output.log] [time zone id]
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: BinaryLogDecoder <input.blog[.gz]> [output.log] [time zone id]");
+            System.exit(1);
+        }
+        TimeZone timeZone = args.length > 2 ? TimeZone.getTimeZone(args[2]) : null;
+        try (InputStream in = openLog(args[0]);
+             OutputStream out = args.length > 1 ? new FileOutputStream(args[1]) : System.out) {
+            new BinaryLogDecoder(timeZone).decode(in, out);
+        } catch (IOException e) {
+            System.err.println("Decoding failed: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Opens binary log file, compressed files are detected by gzip magic number
+     *
+     * @param path path to log file
+     * @return stream of binary log
+     * @throws IOException if file cannot be opened
+     */
+    public static InputStream openLog(String path) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(path));
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == 0x1F && second == 0x8B) {
+            return new GZIPInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Decodes binary log from input stream and writes its text lines to output stream.
+     * Truncated last record is skipped.
+     *
+     * @param in  binary log stream
+     * @param out text log stream
+     * @throws IOException if stream is not a binary log or reading fails
+     */
+    public void decode(InputStream in, OutputStream out) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, CHARSET));
+        byte[] magic = new byte[MAGIC.length];
+        input.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Not a binary log file");
+            }
+        }
+        int version = input.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary log version " + version);
+        }
+        String fileTimeZone = readString(input);
+        dateTimeFormat.setTimeZone(timeZone != null ? timeZone : TimeZone.getTimeZone(fileTimeZone));
+        tags.clear();
+        contexts.clear();
+        long time = 0;
+        try {
+            int type;
+            while ((type = input.read()) >= 0) {
+                switch (type) {
+                    case RECORD_TAG:
+                        tags.put(readVarLong(input), readString(input));
+                        break;
+                    case RECORD_CONTEXT:
+                        contexts.put(readVarLong(input), readString(input));
+                        break;
+                    case RECORD_ENTRY:
+                        long delta = readVarLong(input);
+                        time += (delta >>> 1) ^ -(delta & 1);
+                        int level = input.readUnsignedByte();
+                        String tag = tags.get(readVarLong(input));
+                        long contextId = readVarLong(input);
+                        String message = readString(input);
+                        writeLine(writer, time, level, tag, contextId != 0 ? contexts.get(contextId) : null, message);
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // the last record was not completely written
+        }
+        writer.flush();
+    }
+
+    private void writeLine(Writer writer, long time, int level, String tag, String context, String message) throws IOException {
+        writer.write('\n');
+        writer.write(dateTimeFormat.format(new Date(time)));
+        writer.write(":[");
+        writer.write(String.valueOf(tag));
+        writer.write("]:");
+        writer.write(level < LEVEL_LETTERS.length ? LEVEL_LETTERS[level] : '?');
+        writer.write(":\t");
+        if (context != null) {
+            writer.write(context);
+            writer.write(": ");
+        }
+        writer.write(message);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        long length = readVarLong(input);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Corrupted string length " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        input.readFully(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted varint");
+    }
+}
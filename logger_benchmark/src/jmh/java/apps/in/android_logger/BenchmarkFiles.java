@@ -0,0 +1,62 @@
+package apps.in.android_logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Temporary log files of benchmarks.
+ */
+final class BenchmarkFiles {
+
+    private static final long MAX_FILE_SIZE = 16 * 1024 * 1024;
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * Creates writer of temporary log files, finished files are deleted on rotation
+     *
+     * @param directory directory for log files
+     * @param config    writer settings, file size limit is set to keep disk usage low
+     * @return started writer
+     * @throws IOException if log file cannot be created
+     */
+    static LogFileWriter createWriter(final File directory, LogFileWriter.Config config) throws IOException {
+        config.maxFileSize = MAX_FILE_SIZE;
+        return new LogFileWriter(File.createTempFile("benchmark", ".log", directory), config, new LogFileWriter.FileRotation() {
+            @Override
+            public File nextFile() throws IOException {
+                return File.createTempFile("benchmark", ".log", directory);
+            }
+
+            @Override
+            public void onFileRotated(File previousFile) {
+                previousFile.delete();
+            }
+        });
+    }
+
+    /**
+     * @return new empty temporary directory
+     * @throws IOException if directory cannot be created
+     */
+    static File createDirectory() throws IOException {
+        return Files.createTempDirectory("logger_benchmark").toFile();
+    }
+
+    /**
+     * Deletes directory with all log files
+     *
+     * @param directory directory created by {@link #createDirectory()}
+     */
+    static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
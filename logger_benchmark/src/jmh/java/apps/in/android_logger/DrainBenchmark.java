@@ -0,0 +1,78 @@
+package apps.in.android_logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of writing buffered messages to a temporary file: draining, encoding and file writes.
+ * Buffer is filled before every invocation and drained by {@link LogFileWriter#emergencyDrain(long)}
+ * from the benchmark thread, while the writer thread keeps lingering.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DrainBenchmark {
+
+    private static final int BATCH = 256;
+    private static final long DRAIN_TIMEOUT_MILLIS = 10000;
+    private static final String TAG = "Benchmark";
+    private static final String CONTEXT = "MainActivity";
+    private static final String MESSAGE = "Loaded 42 items in 17 ms from https://example.com/api/items?page=3";
+
+    @Param({"TEXT", "BINARY"})
+    public LogFileFormat format;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    @Param({"false", "true"})
+    public boolean threadBuffers;
+
+    private File directory;
+    private LogFileWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFiles.createDirectory();
+        LogFileWriter.Config config = new LogFileWriter.Config();
+        config.format = format;
+        config.compress = compress;
+        config.threadBuffers = threadBuffers;
+        config.batchSize = Integer.MAX_VALUE;
+        config.lingerMillis = TimeUnit.HOURS.toMillis(1);
+        writer = BenchmarkFiles.createWriter(directory, config);
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < BATCH; i++) {
+            writer.logToFile(time, LogLevel.INFO, TAG, CONTEXT, MESSAGE, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        writer.flush();
+        BenchmarkFiles.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int drain() {
+        return writer.emergencyDrain(DRAIN_TIMEOUT_MILLIS);
+    }
+}
@@ -0,0 +1,82 @@
+package apps.in.android_logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message cost of the work done on the writer thread: building messages and encoding lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EncodeBenchmark {
+
+    private static final String TAG = "Benchmark";
+    private static final String CONTEXT = "MainActivity";
+    private static final String MESSAGE = "Loaded 42 items in 17 ms from https://example.com/api/items?page=3";
+    private static final String TEMPLATE = "Loaded %d items in %d ms from %s";
+    private static final Object[] ARGS = {42, 17, "https://example.com/api/items?page=3"};
+
+    private final LogOutputBuffer output = new LogOutputBuffer();
+    private final LogLineEncoder textEncoder = new LogLineEncoder();
+    private final BinaryLogEncoder binaryEncoder = new BinaryLogEncoder();
+    private final LogTraceCache traceCache = new LogTraceCache(LogTraceCache.DEFAULT_MAX_TRACES);
+    private Throwable exception;
+
+    @Setup
+    public void setUp() {
+        exception = createException(8);
+        binaryEncoder.startFile(output);
+        output.clear();
+        new LogThrowableMessage("Request failed", exception, traceCache).get();
+    }
+
+    @Benchmark
+    public LogOutputBuffer encodeTextLine() {
+        output.clear();
+        textEncoder.encode(System.currentTimeMillis(), LogLevel.INFO, TAG, CONTEXT, MESSAGE, output);
+        return output;
+    }
+
+    @Benchmark
+    public LogOutputBuffer encodeBinaryLine() {
+        output.clear();
+        binaryEncoder.encode(System.currentTimeMillis(), LogLevel.INFO, TAG, CONTEXT, MESSAGE, output);
+        return output;
+    }
+
+    @Benchmark
+    public String formatTemplate() {
+        return LogMessages.resolveMessage(TEMPLATE, ARGS);
+    }
+
+    @Benchmark
+    public String renderException() {
+        return new LogThrowableMessage("Request failed", exception, null).get();
+    }
+
+    @Benchmark
+    public String renderRepeatedException() {
+        return new LogThrowableMessage("Request failed", exception, traceCache).get();
+    }
+
+    /**
+     * Creates exception with cause and stack trace deeper by given number of frames
+     *
+     * @param depth number of additional frames
+     * @return exception
+     */
+    private static Throwable createException(int depth) {
+        if (depth > 0) {
+            return createException(depth - 1);
+        }
+        return new IllegalStateException("Request failed", new java.io.IOException("Connection reset"));
+    }
+}
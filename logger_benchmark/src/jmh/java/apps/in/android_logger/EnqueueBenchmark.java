@@ -0,0 +1,79 @@
+package apps.in.android_logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link LogFileWriter#logToFile} for the calling thread with 1, 4 and 16 producers.
+ * The message is a template with arguments, so formatting is left to the writer thread.
+ * With {@link OverflowPolicy#DROP_NEWEST} producers never wait and part of the calls are drops,
+ * with {@link OverflowPolicy#BLOCK} throughput is limited by the writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EnqueueBenchmark {
+
+    private static final String TAG = "Benchmark";
+    private static final String TEMPLATE = "Loaded %d items in %d ms";
+    private static final Object[] ARGS = {42, 17};
+
+    @Param({"DROP_NEWEST", "BLOCK"})
+    public OverflowPolicy overflowPolicy;
+
+    @Param({"false", "true"})
+    public boolean threadBuffers;
+
+    private File directory;
+    private LogFileWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = BenchmarkFiles.createDirectory();
+        LogFileWriter.Config config = new LogFileWriter.Config();
+        config.overflowPolicy = overflowPolicy;
+        config.threadBuffers = threadBuffers;
+        writer = BenchmarkFiles.createWriter(directory, config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        writer.flush();
+        BenchmarkFiles.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void enqueue1Thread() {
+        enqueue();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void enqueue4Threads() {
+        enqueue();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void enqueue16Threads() {
+        enqueue();
+    }
+
+    private void enqueue() {
+        writer.logToFile(System.currentTimeMillis(), LogLevel.INFO, TAG, EnqueueBenchmark.class, TEMPLATE, ARGS);
+    }
+}